@@ -0,0 +1,45 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * No-fill classification done by every {@code onFailedToReceiveAd}.
+ */
+@State(Scope.Thread)
+public class ErrorClassificationBenchmark {
+    private final String noFillMessage = "Error: 204 Empty Response";
+    private final String otherMessage = "Error: failed to connect to host, java.net.SocketTimeoutException: timeout";
+
+    @Benchmark
+    public boolean isNoFill_noFill() {
+        return StartappErrors.isNoFill(noFillMessage);
+    }
+
+    @Benchmark
+    public boolean isNoFill_otherError() {
+        return StartappErrors.isNoFill(otherMessage);
+    }
+
+    @Benchmark
+    public boolean isNoFill_null() {
+        return StartappErrors.isNoFill(null);
+    }
+}
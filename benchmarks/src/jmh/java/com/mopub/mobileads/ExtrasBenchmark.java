@@ -0,0 +1,87 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import com.startapp.sdk.adsbase.model.AdPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parsing of the custom event data done by every load, and the ad format lookup on parsed and cached extras.
+ */
+@State(Scope.Thread)
+public class ExtrasBenchmark {
+    private Map<String, String> interstitialExtras;
+    private Map<String, String> bannerExtras;
+    private Map<String, String> nativeExtras;
+
+    @Setup
+    public void setUp() {
+        interstitialExtras = new HashMap<>();
+        interstitialExtras.put("startappAppId", "205489527");
+        interstitialExtras.put("adTag", "interstitialTag");
+        interstitialExtras.put("interstitialMode", "VIDEO");
+        interstitialExtras.put("minCPM", "0.03");
+        interstitialExtras.put("muteVideo", "true");
+        interstitialExtras.put("adunit_format", "Fullscreen");
+
+        bannerExtras = new HashMap<>();
+        bannerExtras.put("startappAppId", "205489527");
+        bannerExtras.put("adTag", "bannerTag");
+        bannerExtras.put("minCPM", "0.03");
+        bannerExtras.put("is3DBanner", "false");
+        bannerExtras.put("adunit_format", "Medium_Rectangle");
+
+        nativeExtras = new HashMap<>();
+        nativeExtras.put("startappAppId", "205489527");
+        nativeExtras.put("adTag", "nativeTag");
+        nativeExtras.put("minCPM", "0.03");
+        nativeExtras.put("nativeImageSize", "SIZE340X340");
+        nativeExtras.put("nativeSecondaryImageSize", "SIZE72X72");
+    }
+
+    @Benchmark
+    public AdPreferences makeAdPreferences_interstitial() {
+        return new StartappAdapter.Extras(null, interstitialExtras, false).getAdPreferences();
+    }
+
+    @Benchmark
+    public AdPreferences makeAdPreferences_native() {
+        return new StartappAdapter.Extras(null, nativeExtras, true).getAdPreferences();
+    }
+
+    @Benchmark
+    public AdPreferences getAdPreferences_compiled() {
+        return StartappAdapter.Extras.compile(null, interstitialExtras, false).getAdPreferences();
+    }
+
+    @Benchmark
+    public StartappAdapter.Extras.Format getFormat_parsed() {
+        return new StartappAdapter.Extras(null, bannerExtras, false).getFormat();
+    }
+
+    @Benchmark
+    public StartappAdapter.Extras.Format getFormat_compiled() {
+        return StartappAdapter.Extras.compile(null, bannerExtras, false).getFormat();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.nativeads;
+
+import com.startapp.sdk.ads.nativead.NativeAdDetails;
+import com.startapp.sdk.ads.nativead.StartAppNativeAd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Field;
+
+/**
+ * Copying of the received {@link NativeAdDetails} into the MoPub native ad.
+ */
+@State(Scope.Thread)
+public class NativeAdPropertiesBenchmark {
+    private StartappNative.StartappStaticNativeAd nativeAd;
+
+    @Setup
+    public void setUp() throws Exception {
+        nativeAd = new StartappNative.StartappStaticNativeAd();
+
+        final Field field = StartappNative.StartappStaticNativeAd.class.getDeclaredField("adDetails");
+        field.setAccessible(true);
+        field.set(nativeAd, new NativeAdDetails(
+                "Title",
+                "Description of the advertised application",
+                4.5f,
+                "https://example.com/image.png",
+                "https://example.com/icon.png",
+                StartAppNativeAd.CampaignAction.OPEN_MARKET));
+    }
+
+    @Benchmark
+    public StaticNativeAd populateAdProperties_imageAd() {
+        nativeAd.populateAdProperties(false);
+        return nativeAd;
+    }
+
+    @Benchmark
+    public StaticNativeAd populateAdProperties_contentAd() {
+        nativeAd.populateAdProperties(true);
+        return nativeAd;
+    }
+
+    @Benchmark
+    public String mapCallToAction() {
+        return StartappNative.StartappStaticNativeAd.mapCallToAction(StartAppNativeAd.CampaignAction.LAUNCH_APP);
+    }
+}
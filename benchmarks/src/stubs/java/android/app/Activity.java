@@ -0,0 +1,6 @@
+package android.app;
+
+import android.content.ContextWrapper;
+
+public class Activity extends ContextWrapper {
+}
@@ -0,0 +1,9 @@
+package android.view;
+
+public class View {
+    public interface OnAttachStateChangeListener {
+        void onViewAttachedToWindow(View v);
+
+        void onViewDetachedFromWindow(View v);
+    }
+}
@@ -0,0 +1,6 @@
+package android.view;
+
+public class ViewGroup extends View implements ViewParent {
+    public static class LayoutParams {
+    }
+}
@@ -0,0 +1,8 @@
+package android.widget;
+
+import android.view.ViewGroup;
+
+public class FrameLayout extends ViewGroup {
+    public static class LayoutParams extends ViewGroup.LayoutParams {
+    }
+}
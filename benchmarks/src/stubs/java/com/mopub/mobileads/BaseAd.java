@@ -0,0 +1,4 @@
+package com.mopub.mobileads;
+
+public abstract class BaseAd {
+}
@@ -0,0 +1,9 @@
+package com.mopub.nativeads;
+
+public abstract class BaseNativeAd {
+    protected final void notifyAdImpressed() {
+    }
+
+    protected final void notifyAdClicked() {
+    }
+}
@@ -0,0 +1,4 @@
+package com.mopub.nativeads;
+
+public abstract class CustomEventNative {
+}
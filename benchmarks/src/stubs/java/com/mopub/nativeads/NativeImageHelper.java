@@ -0,0 +1,6 @@
+package com.mopub.nativeads;
+
+public class NativeImageHelper {
+    public interface ImageListener {
+    }
+}
@@ -0,0 +1,42 @@
+package com.mopub.nativeads;
+
+public abstract class StaticNativeAd extends BaseNativeAd {
+    private String title;
+    private String text;
+    private String callToAction;
+    private Double starRating;
+    private String mainImageUrl;
+    private String iconImageUrl;
+
+    public final void setTitle(String title) {
+        this.title = title;
+    }
+
+    public final void setText(String text) {
+        this.text = text;
+    }
+
+    public final void setCallToAction(String callToAction) {
+        this.callToAction = callToAction;
+    }
+
+    public final void setStarRating(Double starRating) {
+        this.starRating = starRating;
+    }
+
+    public final void setMainImageUrl(String mainImageUrl) {
+        this.mainImageUrl = mainImageUrl;
+    }
+
+    public final void setIconImageUrl(String iconImageUrl) {
+        this.iconImageUrl = iconImageUrl;
+    }
+
+    public final String getTitle() {
+        return title;
+    }
+
+    public final String getCallToAction() {
+        return callToAction;
+    }
+}
@@ -0,0 +1,6 @@
+package com.startapp.sdk.ads.banner;
+
+import android.widget.FrameLayout;
+
+public abstract class BannerBase extends FrameLayout {
+}
@@ -0,0 +1,4 @@
+package com.startapp.sdk.ads.banner;
+
+public class Mrec extends BannerBase {
+}
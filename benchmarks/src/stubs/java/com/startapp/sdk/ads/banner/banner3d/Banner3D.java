@@ -0,0 +1,6 @@
+package com.startapp.sdk.ads.banner.banner3d;
+
+import com.startapp.sdk.ads.banner.BannerBase;
+
+public class Banner3D extends BannerBase {
+}
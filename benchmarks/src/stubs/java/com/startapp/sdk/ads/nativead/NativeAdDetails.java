@@ -0,0 +1,50 @@
+package com.startapp.sdk.ads.nativead;
+
+public class NativeAdDetails {
+    private final String title;
+    private final String description;
+    private final float rating;
+    private final String imageUrl;
+    private final String secondaryImageUrl;
+    private final StartAppNativeAd.CampaignAction campaignAction;
+
+    public NativeAdDetails(
+            String title,
+            String description,
+            float rating,
+            String imageUrl,
+            String secondaryImageUrl,
+            StartAppNativeAd.CampaignAction campaignAction
+    ) {
+        this.title = title;
+        this.description = description;
+        this.rating = rating;
+        this.imageUrl = imageUrl;
+        this.secondaryImageUrl = secondaryImageUrl;
+        this.campaignAction = campaignAction;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public float getRating() {
+        return rating;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public String getSecondaryImageUrl() {
+        return secondaryImageUrl;
+    }
+
+    public StartAppNativeAd.CampaignAction getCampaignAction() {
+        return campaignAction;
+    }
+}
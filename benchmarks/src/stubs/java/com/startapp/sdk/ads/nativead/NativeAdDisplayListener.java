@@ -0,0 +1,4 @@
+package com.startapp.sdk.ads.nativead;
+
+public interface NativeAdDisplayListener {
+}
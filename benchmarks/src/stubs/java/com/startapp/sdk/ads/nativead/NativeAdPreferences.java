@@ -0,0 +1,29 @@
+package com.startapp.sdk.ads.nativead;
+
+import com.startapp.sdk.adsbase.model.AdPreferences;
+
+public class NativeAdPreferences extends AdPreferences {
+    private int adsNumber = 1;
+    private int primaryImageSize = -1;
+    private int secondaryImageSize = -1;
+    private boolean contentAd;
+
+    public NativeAdPreferences setAdsNumber(int adsNumber) {
+        this.adsNumber = adsNumber;
+        return this;
+    }
+
+    public NativeAdPreferences setPrimaryImageSize(int primaryImageSize) {
+        this.primaryImageSize = primaryImageSize;
+        return this;
+    }
+
+    public NativeAdPreferences setSecondaryImageSize(int secondaryImageSize) {
+        this.secondaryImageSize = secondaryImageSize;
+        return this;
+    }
+
+    public boolean isContentAd() {
+        return contentAd;
+    }
+}
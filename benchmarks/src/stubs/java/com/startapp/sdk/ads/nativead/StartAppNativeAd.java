@@ -0,0 +1,10 @@
+package com.startapp.sdk.ads.nativead;
+
+import com.startapp.sdk.adsbase.Ad;
+
+public class StartAppNativeAd extends Ad {
+    public enum CampaignAction {
+        LAUNCH_APP,
+        OPEN_MARKET
+    }
+}
@@ -0,0 +1,12 @@
+package com.startapp.sdk.adsbase;
+
+public class StartAppAd extends Ad {
+    public enum AdMode {
+        AUTOMATIC,
+        FULLPAGE,
+        OFFERWALL,
+        REWARDED_VIDEO,
+        VIDEO,
+        OVERLAY
+    }
+}
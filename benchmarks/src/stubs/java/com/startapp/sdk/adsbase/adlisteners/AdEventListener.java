@@ -0,0 +1,4 @@
+package com.startapp.sdk.adsbase.adlisteners;
+
+public interface AdEventListener {
+}
@@ -0,0 +1,29 @@
+package com.startapp.sdk.adsbase.model;
+
+public class AdPreferences {
+    private String adTag;
+    private Double minCpm;
+    private double latitude;
+    private double longitude;
+    private boolean videoMuted;
+
+    public void setAdTag(String adTag) {
+        this.adTag = adTag;
+    }
+
+    public void setMinCpm(Double minCpm) {
+        this.minCpm = minCpm;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public void muteVideo() {
+        videoMuted = true;
+    }
+}
@@ -0,0 +1,9 @@
+package com.mopub.mobileads;
+
+import android.app.Activity;
+
+/**
+ * Empty host for the ads loaded by {@link StartappRetainedHeapTest}.
+ */
+public class LeakTestActivity extends Activity {
+}
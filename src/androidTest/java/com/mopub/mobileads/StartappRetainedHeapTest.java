@@ -0,0 +1,198 @@
+package com.mopub.mobileads;
+
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.mopub.common.DataKeys;
+import com.mopub.nativeads.BaseNativeAd;
+import com.mopub.nativeads.NativeErrorCode;
+import com.mopub.nativeads.StartappNative;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs load/invalidate cycles, or load/destroy cycles for native ads, each in a new Activity,
+ * and checks that neither the number of Activities kept alive nor the retained heap grows with the number of cycles.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartappRetainedHeapTest {
+    private static final int WARM_UP_CYCLES = 5;
+    private static final int CYCLES = 30;
+
+    // the SDK may still hold on to the most recent ad until its request completes
+    private static final int MAX_RETAINED_ACTIVITIES = 2;
+    private static final long MAX_HEAP_GROWTH_BYTES = 2 * 1024 * 1024;
+
+    @BeforeClass
+    public static void initializeSdk() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        StartappAdapter.initializeSdkIfNeeded(context, "retained-heap-test");
+
+        final Future<Boolean> readiness = StartappAdapter.getSdkReadiness();
+        if (readiness != null) {
+            readiness.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void bannerCycles_doNotRetainActivities() throws Exception {
+        assertFlat(bannerAdData());
+    }
+
+    @Test
+    public void recycledBannerCycles_doNotRetainActivities() throws Exception {
+        StartappSettings.setBannerRecyclingEnabled(true);
+        try {
+            assertFlat(bannerAdData());
+        } finally {
+            StartappSettings.setBannerRecyclingEnabled(false);
+        }
+    }
+
+    @Test
+    public void interstitialCycles_doNotRetainActivities() throws Exception {
+        assertFlat(interstitialAdData());
+    }
+
+    @Test
+    public void nativeCycles_doNotRetainActivities() throws Exception {
+        assertFlat(new NativeCycle());
+    }
+
+    private interface Cycle {
+        void run(@NonNull LeakTestActivity activity);
+    }
+
+    private static final class AdapterCycle implements Cycle {
+        @NonNull
+        private final AdData adData;
+
+        AdapterCycle(@NonNull AdData adData) {
+            this.adData = adData;
+        }
+
+        @Override
+        public void run(@NonNull LeakTestActivity activity) {
+            final StartappAdapter adapter = new StartappAdapter();
+            try {
+                adapter.load(activity, adData);
+            } catch (Exception ex) {
+                fail(ex.toString());
+            }
+
+            adapter.onInvalidate();
+        }
+    }
+
+    /**
+     * Loads a native ad from the Activity and destroys it once it arrives, the Activity may be gone by then.
+     */
+    private static final class NativeCycle extends StartappNative implements Cycle {
+        @Override
+        public void run(@NonNull LeakTestActivity activity) {
+            loadNativeAd(activity, new CustomEventNativeListener() {
+                @Override
+                public void onNativeAdLoaded(BaseNativeAd nativeAd) {
+                    nativeAd.destroy();
+                }
+
+                @Override
+                public void onNativeAdFailed(NativeErrorCode errorCode) {
+                }
+            }, new HashMap<String, Object>(), new HashMap<String, String>());
+        }
+    }
+
+    private static void assertFlat(@NonNull AdData adData) throws Exception {
+        assertFlat(new AdapterCycle(adData));
+    }
+
+    private static void assertFlat(@NonNull Cycle cycle) throws Exception {
+        final List<WeakReference<Activity>> activities = new ArrayList<>();
+
+        runCycles(cycle, WARM_UP_CYCLES, activities);
+        final long warmHeap = retainedHeapBytes();
+
+        runCycles(cycle, CYCLES, activities);
+        final long finalHeap = retainedHeapBytes();
+
+        int retained = 0;
+        for (WeakReference<Activity> activity : activities) {
+            if (activity.get() != null) {
+                ++retained;
+            }
+        }
+
+        assertTrue(retained + " of " + activities.size() + " activities retained", retained <= MAX_RETAINED_ACTIVITIES);
+        assertTrue("retained heap grew by " + (finalHeap - warmHeap) + " bytes",
+                finalHeap - warmHeap <= MAX_HEAP_GROWTH_BYTES);
+    }
+
+    private static void runCycles(
+            @NonNull final Cycle cycle,
+            int count,
+            @NonNull final List<WeakReference<Activity>> activities
+    ) {
+        for (int i = 0; i < count; ++i) {
+            final ActivityScenario<LeakTestActivity> scenario = ActivityScenario.launch(LeakTestActivity.class);
+
+            scenario.onActivity(new ActivityScenario.ActivityAction<LeakTestActivity>() {
+                @Override
+                public void perform(LeakTestActivity activity) {
+                    activities.add(new WeakReference<Activity>(activity));
+                    cycle.run(activity);
+                }
+            });
+
+            scenario.close();
+        }
+    }
+
+    private static long retainedHeapBytes() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; ++i) {
+            runtime.gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @NonNull
+    private static AdData bannerAdData() {
+        final Map<String, String> extras = new HashMap<>();
+        extras.put(DataKeys.ADUNIT_FORMAT, "banner");
+
+        return new AdData.Builder()
+                .extras(extras)
+                .adWidth(320)
+                .adHeight(50)
+                .build();
+    }
+
+    @NonNull
+    private static AdData interstitialAdData() {
+        return new AdData.Builder()
+                .extras(new HashMap<String, String>())
+                .build();
+    }
+}
@@ -19,21 +19,23 @@ package com.mopub.mobileads;
 import android.app.Activity;
 import android.content.Context;
 import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.DisplayMetrics;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.mopub.common.LifecycleListener;
 import com.mopub.common.MediationSettings;
 import com.mopub.common.MoPubReward;
-import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.Views;
 import com.startapp.sdk.ads.banner.Banner;
 import com.startapp.sdk.ads.banner.BannerBase;
@@ -43,15 +45,17 @@ import com.startapp.sdk.ads.banner.banner3d.Banner3D;
 import com.startapp.sdk.ads.nativead.NativeAdPreferences;
 import com.startapp.sdk.adsbase.Ad;
 import com.startapp.sdk.adsbase.StartAppAd;
-import com.startapp.sdk.adsbase.StartAppSDK;
 import com.startapp.sdk.adsbase.adlisteners.AdDisplayListener;
 import com.startapp.sdk.adsbase.adlisteners.AdEventListener;
 import com.startapp.sdk.adsbase.adlisteners.VideoListener;
 import com.startapp.sdk.adsbase.model.AdPreferences;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Future;
 
 import static com.mopub.common.DataKeys.ADUNIT_FORMAT;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CLICKED;
@@ -76,23 +80,67 @@ public class StartappAdapter extends BaseAd {
     private static final String ADUNIT_MEDIUM_RECTANGLE = "medium_rectangle";
     private static final String APP_ID = "startappAppId";
 
-    private static final AtomicBoolean isInitialized = new AtomicBoolean(false);
+    private static final Handler handler = new Handler(Looper.getMainLooper());
 
+    /**
+     * Starts the SDK initialization on a background thread.
+     *
+     * @return true if this call started the initialization
+     */
     public static boolean initializeSdkIfNeeded(@NonNull Context context, @Nullable String appId) {
         if (TextUtils.isEmpty(appId)) {
             return false;
         }
 
-        if (!isInitialized.getAndSet(true)) {
-            StartAppAd.disableSplash();
-            StartAppAd.enableConsent(context, false);
-            StartAppSDK.addWrapper(context, "MoPub", BuildConfig.VERSION_NAME);
-            StartAppSDK.init(context, appId, false);
+        return StartappSdkInitializer.start(context, appId);
+    }
 
-            return true;
+    /**
+     * Starts the SDK initialization and the prefetches of the placements loaded during the previous launches,
+     * without waiting for the MoPub configuration. Call it early in {@code Application.onCreate()}
+     * with {@link StartappSettings#setWarmStartEnabled(boolean)} on, it does nothing on the first launch.
+     */
+    public static void warmStart(@NonNull Context context) {
+        if (StartappSettings.isWarmStartEnabled()) {
+            StartappWarmStart.start(context);
         }
+    }
+
+    /**
+     * Adds the extras of a placement to the warm start snapshot.
+     *
+     * @param compiled the extras compiled from {@code extras}, they keep the snapshot entry of the placement
+     */
+    public static void rememberForWarmStart(
+            @NonNull Context context,
+            @NonNull StartappLatency.Format format,
+            @Nullable Map<String, String> extras,
+            @NonNull Extras compiled
+    ) {
+        StartappWarmStart.remember(context, format, extras, compiled);
+    }
+
+    /**
+     * @return future completed once the SDK initialization has finished, null if it was not started yet
+     */
+    @Nullable
+    public static Future<Boolean> getSdkReadiness() {
+        return StartappSdkInitializer.getReadiness();
+    }
+
+    /**
+     * Runs {@code runnable} once the SDK initialization has finished, right away if it is not pending.
+     */
+    public static void runWhenSdkReady(@NonNull Runnable runnable) {
+        StartappSdkInitializer.whenReady(runnable);
+    }
 
-        return false;
+    /**
+     * @return duration of each SDK initialization step in nanoseconds, zero for steps not run yet
+     */
+    @NonNull
+    public static Map<String, Long> getSdkInitTimingsNanos() {
+        return StartappSdkInitializer.getTimingsNanos();
     }
 
     // region Extras
@@ -105,6 +153,163 @@ public class StartappAdapter extends BaseAd {
         private static final String IS_3D_BANNER = "is3DBanner";
         private static final String NATIVE_IMAGE_SIZE = "nativeImageSize";
         private static final String NATIVE_SECONDARY_IMAGE_SIZE = "nativeSecondaryImageSize";
+        private static final String LOCATION = "location";
+
+        private static final String[] LOCAL_KEYS = {
+                AD_TAG,
+                INTERSTITIAL_MODE,
+                MIN_CPM,
+                MUTE_VIDEO,
+                IS_3D_BANNER,
+                NATIVE_IMAGE_SIZE,
+                NATIVE_SECONDARY_IMAGE_SIZE,
+        };
+
+        // server keys read by the constructor, MoPub adds keys of its own that must not split the cache
+        static final String[] SERVER_KEYS = {
+                AD_TAG,
+                INTERSTITIAL_MODE,
+                MIN_CPM,
+                MUTE_VIDEO,
+                IS_3D_BANNER,
+                NATIVE_IMAGE_SIZE,
+                NATIVE_SECONDARY_IMAGE_SIZE,
+                APP_ID,
+                ADUNIT_FORMAT,
+        };
+
+        private static final int CACHE_SIZE = 32;
+
+        private static final LinkedHashMap<CacheKey, Extras> cache = new LinkedHashMap<CacheKey, Extras>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Extras> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        /**
+         * Returns extras parsed once per distinct value of the keys they read from {@code localExtras}
+         * and {@code serverExtras}. The returned instance is shared and immutable,
+         * {@link #getAdPreferences()} builds new preferences for every load.
+         */
+        @NonNull
+        public static Extras compile(
+                @Nullable Map<String, Object> localExtras,
+                @Nullable Map<String, String> serverExtras,
+                boolean isNative
+        ) {
+            if (localExtras != null && localExtras.get(LOCATION) != null) {
+                return new Extras(localExtras, serverExtras, isNative);
+            }
+
+            final CacheKey key = new CacheKey(localExtras, serverExtras, isNative);
+
+            Extras result;
+            synchronized (cache) {
+                result = cache.get(key);
+            }
+
+            if (result == null) {
+                result = new Extras(localExtras, serverExtras, isNative);
+
+                synchronized (cache) {
+                    cache.put(key, result);
+                }
+            }
+
+            return result;
+        }
+
+        static void resetForTesting() {
+            synchronized (cache) {
+                cache.clear();
+            }
+        }
+
+        private static final class CacheKey {
+            @Nullable
+            private final String[] serverValues;
+
+            @Nullable
+            private final Object[] localValues;
+
+            private final boolean isNative;
+            private final int hashCode;
+
+            CacheKey(@Nullable Map<String, Object> localExtras, @Nullable Map<String, String> serverExtras, boolean isNative) {
+                this.serverValues = pickServerValues(serverExtras);
+                this.localValues = pickLocalValues(localExtras);
+                this.isNative = isNative;
+
+                int result = Arrays.hashCode(serverValues);
+                result = 31 * result + Arrays.hashCode(localValues);
+                result = 31 * result + (isNative ? 1 : 0);
+                hashCode = result;
+            }
+
+            @Nullable
+            private static String[] pickServerValues(@Nullable Map<String, String> serverExtras) {
+                if (serverExtras == null || serverExtras.isEmpty()) {
+                    return null;
+                }
+
+                final String[] result = new String[SERVER_KEYS.length];
+                for (int i = 0; i < SERVER_KEYS.length; ++i) {
+                    result[i] = serverExtras.get(SERVER_KEYS[i]);
+                }
+
+                return result;
+            }
+
+            @Nullable
+            private static Object[] pickLocalValues(@Nullable Map<String, Object> localExtras) {
+                if (localExtras == null || localExtras.isEmpty()) {
+                    return null;
+                }
+
+                Object[] result = null;
+                for (int i = 0; i < LOCAL_KEYS.length; ++i) {
+                    final Object value = localExtras.get(LOCAL_KEYS[i]);
+                    if (value != null) {
+                        if (result == null) {
+                            result = new Object[LOCAL_KEYS.length];
+                        }
+
+                        result[i] = value;
+                    }
+                }
+
+                return result;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) {
+                    return true;
+                }
+
+                if (!(o instanceof CacheKey)) {
+                    return false;
+                }
+
+                final CacheKey other = (CacheKey) o;
+                return hashCode == other.hashCode
+                        && isNative == other.isNative
+                        && Arrays.equals(localValues, other.localValues)
+                        && Arrays.equals(serverValues, other.serverValues);
+            }
+
+            @Override
+            public int hashCode() {
+                return hashCode;
+            }
+        }
+
+        enum Format {
+            INTERSTITIAL,
+            BANNER,
+            MEDIUM_RECTANGLE
+        }
 
         public enum Mode {
             OFFERWALL,
@@ -113,19 +318,56 @@ public class StartappAdapter extends BaseAd {
         }
 
         public enum Size {
-            SIZE72X72,
-            SIZE100X100,
-            SIZE150X150,
-            SIZE340X340,
-            SIZE1200X628
+            SIZE72X72(72, 72),
+            SIZE100X100(100, 100),
+            SIZE150X150(150, 150),
+            SIZE340X340(340, 340),
+            SIZE1200X628(1200, 628);
+
+            private final int width;
+            private final int height;
+
+            Size(int width, int height) {
+                this.width = width;
+                this.height = height;
+            }
+
+            public int getWidth() {
+                return width;
+            }
+
+            public int getHeight() {
+                return height;
+            }
+        }
+
+        private final boolean isNative;
+        private final boolean isContentAd;
+        private boolean isVideoMuted;
+
+        public boolean isContentAd() {
+            return isContentAd;
         }
 
+        @Nullable
+        private Double latitude;
+
+        @Nullable
+        private Double longitude;
+
+        // keys of the placement, built on first use so that loads sharing the instance do not allocate them
+        private final StartappCircuitBreaker.Key[] breakerKeys =
+                new StartappCircuitBreaker.Key[StartappLatency.Format.values().length];
+        private final StartappInterstitialPool.Key[] poolKeys = new StartappInterstitialPool.Key[2];
+        private final StartappWarmStart.Entry[] warmStartEntries =
+                new StartappWarmStart.Entry[StartappLatency.Format.values().length];
+
         @NonNull
-        private final AdPreferences adPreferences;
+        private Format format = Format.INTERSTITIAL;
 
         @NonNull
-        public AdPreferences getAdPreferences() {
-            return adPreferences;
+        Format getFormat() {
+            return format;
         }
 
         private boolean is3DBanner;
@@ -142,6 +384,38 @@ public class StartappAdapter extends BaseAd {
             return adMode;
         }
 
+        @Nullable
+        private String adTag;
+
+        @Nullable
+        public String getAdTag() {
+            return adTag;
+        }
+
+        @Nullable
+        private Double minCPM;
+
+        @Nullable
+        public Double getMinCPM() {
+            return minCPM;
+        }
+
+        @Nullable
+        private Size nativeImageSize;
+
+        @Nullable
+        public Size getNativeImageSize() {
+            return nativeImageSize;
+        }
+
+        @Nullable
+        private Size nativeSecondaryImageSize;
+
+        @Nullable
+        public Size getNativeSecondaryImageSize() {
+            return nativeSecondaryImageSize;
+        }
+
         @Nullable
         private String appId;
 
@@ -151,21 +425,14 @@ public class StartappAdapter extends BaseAd {
         }
 
         public Extras(@Nullable Map<String, Object> localExtras, @Nullable Map<String, String> serverExtras, boolean isNative) {
-            adPreferences = makeAdPreferences(localExtras, serverExtras, isNative);
-        }
+            this.isNative = isNative;
+            // no extra selects content ads, it is the SDK's default
+            this.isContentAd = isNative && new NativeAdPreferences().isContentAd();
 
-        @NonNull
-        private AdPreferences makeAdPreferences(
-                @Nullable Map<String, Object> localExtras,
-                @Nullable Map<String, String> serverExtras,
-                boolean isNative
-        ) {
-            String adTag = null;
-            boolean isVideoMuted = false;
-            Double minCPM = null;
-            Size nativeImageSize = null;
-            Size nativeSecondaryImageSize = null;
+            parse(localExtras, serverExtras);
+        }
 
+        private void parse(@Nullable Map<String, Object> localExtras, @Nullable Map<String, String> serverExtras) {
             if (localExtras != null) {
                 adTag = (String) localExtras.get(AD_TAG);
                 nativeImageSize = (Extras.Size)localExtras.get(NATIVE_IMAGE_SIZE);
@@ -202,7 +469,7 @@ public class StartappAdapter extends BaseAd {
             }
 
             if (serverExtras != null) {
-                Log.v(LOG_TAG, "Startapp serverParameter:" + serverExtras.toString());
+                StartappLog.v(LOG_TAG, "Startapp serverParameter:", serverExtras);
 
                 if (serverExtras.containsKey(AD_TAG)) {
                     adTag = serverExtras.get(AD_TAG);
@@ -263,27 +530,84 @@ public class StartappAdapter extends BaseAd {
                 if (serverExtras.containsKey(APP_ID)) {
                     appId = serverExtras.get(APP_ID);
                 }
+
+                final String adUnitFormat = serverExtras.get(ADUNIT_FORMAT);
+                if (adUnitFormat != null) {
+                    final String lowerCase = adUnitFormat.toLowerCase(ENGLISH);
+                    if (lowerCase.contains(ADUNIT_MEDIUM_RECTANGLE)) {
+                        format = Format.MEDIUM_RECTANGLE;
+                    } else if (lowerCase.contains(ADUNIT_BANNER)) {
+                        format = Format.BANNER;
+                    }
+                }
+            }
+
+            if (localExtras != null) {
+                if (localExtras.containsKey(LOCATION)) {
+                    final Object locationObject = localExtras.get(LOCATION);
+                    if (locationObject instanceof Location) {
+                        final Location location = (Location) locationObject;
+                        latitude = location.getLatitude();
+                        longitude = location.getLongitude();
+                    }
+                }
+            }
+        }
+
+        @NonNull
+        public StartappCircuitBreaker.Key getBreakerKey(@NonNull StartappLatency.Format format) {
+            StartappCircuitBreaker.Key key = breakerKeys[format.ordinal()];
+            if (key == null) {
+                key = new StartappCircuitBreaker.Key(format, adTag, minCPM);
+                breakerKeys[format.ordinal()] = key;
+            }
+
+            return key;
+        }
+
+        @Nullable
+        StartappWarmStart.Entry getWarmStartEntry(@NonNull StartappLatency.Format format) {
+            return warmStartEntries[format.ordinal()];
+        }
+
+        void setWarmStartEntry(@NonNull StartappWarmStart.Entry entry) {
+            warmStartEntries[entry.format.ordinal()] = entry;
+        }
+
+        /**
+         * @return key of the interstitial pool, of the rewarded prefetches if {@code isRewarded}
+         */
+        @NonNull
+        StartappInterstitialPool.Key getPoolKey(boolean isRewarded) {
+            final int index = isRewarded ? 1 : 0;
+
+            StartappInterstitialPool.Key key = poolKeys[index];
+            if (key == null) {
+                key = new StartappInterstitialPool.Key(isRewarded ? StartAppAd.AdMode.REWARDED_VIDEO : adMode, adTag, minCPM);
+                poolKeys[index] = key;
             }
 
+            return key;
+        }
+
+        /**
+         * @return new preferences for a single load, the SDK may keep and modify them
+         */
+        @NonNull
+        public AdPreferences getAdPreferences() {
             NativeAdPreferences nativeAdPrefs = null;
             AdPreferences prefs;
             if (isNative) {
                 nativeAdPrefs = new NativeAdPreferences();
+                nativeAdPrefs.setAdsNumber(StartappSettings.getNativeAdsPerRequest());
                 prefs = nativeAdPrefs;
             } else {
                 prefs = new AdPreferences();
             }
 
-            if (localExtras != null) {
-                final String locationKey = "location";
-                if (localExtras.containsKey(locationKey)) {
-                    final Object locationObject = localExtras.get(locationKey);
-                    if (locationObject instanceof Location) {
-                        final Location location = (Location) locationObject;
-                        prefs.setLatitude(location.getLatitude());
-                        prefs.setLongitude(location.getLongitude());
-                    }
-                }
+            if (latitude != null && longitude != null) {
+                prefs.setLatitude(latitude);
+                prefs.setLongitude(longitude);
             }
 
             prefs.setAdTag(adTag);
@@ -367,15 +691,80 @@ public class StartappAdapter extends BaseAd {
     @Nullable
     private StartAppAd startAppAd;
 
+    @Nullable
+    private String adTag;
+
+    @NonNull
+    private StartappLatency.Format loadFormat = StartappLatency.Format.INTERSTITIAL;
+
+    private long loadStartNanos;
+    private long showStartNanos;
+    private long displayedNanos;
+
+    @Nullable
+    private StartappCircuitBreaker.Key breakerKey;
+
+    @Nullable
+    private StartappInterstitialPool.Key sharedLoadKey;
+
+    private boolean isLoadDeadlinePending;
+    private boolean isLoadTimedOut;
+
+    @VisibleForTesting
+    final Dispatcher dispatcher = new Dispatcher();
+
     @Override
     protected void onInvalidate() {
+        if (isLoadDeadlinePending) {
+            handler.removeCallbacks(dispatcher);
+            isLoadDeadlinePending = false;
+        }
+
+        if (sharedLoadKey != null) {
+            StartappInterstitialPool.cancelShared(sharedLoadKey, dispatcher);
+        }
+
         startAppAd = null;
+        adTag = null;
+        breakerKey = null;
+        sharedLoadKey = null;
+        isLoadTimedOut = false;
+        loadStartNanos = 0;
+        showStartNanos = 0;
+        displayedNanos = 0;
+        rewardedContext = null;
+        rewardedKey = null;
+        rewardedExtras = null;
+        poolContext = null;
+        poolKey = null;
+        poolExtras = null;
         isRewarded = false;
         isMediumRectangle = false;
         isRewardedVideoLoaded = false;
 
-        Views.removeFromParent(bannerView);
+        // invalidated before the load finished, a pooled banner must not keep the offscreen placement
+        leaveOffscreen();
+
+        final Activity activity = bannerActivity != null ? bannerActivity.get() : null;
+        if (activity != null && bannerKey != null && bannerEntry != null) {
+            StartappBannerPool.release(activity, bannerKey, bannerEntry);
+        } else {
+            if (bannerEntry != null) {
+                bannerEntry.listener.delegate = null;
+            }
+
+            Views.removeFromParent(bannerView);
+        }
+
+        if (bannerView != null) {
+            bannerView.removeOnAttachStateChangeListener(dispatcher);
+        }
+
+        isOffscreen = false;
         bannerView = null;
+        bannerActivity = null;
+        bannerKey = null;
+        bannerEntry = null;
     }
 
     @Nullable
@@ -402,22 +791,201 @@ public class StartappAdapter extends BaseAd {
     }
 
     @Override
-    protected void load(@NonNull Context context, @NonNull AdData adData) throws Exception {
-        if (adData.isRewarded()) {
-            loadRewardedVideo(context, adData);
+    protected void load(@NonNull final Context context, @NonNull final AdData adData) throws Exception {
+        if (!StartappSdkInitializer.isPending()) {
+            loadWhenReady(context, adData);
             return;
         }
 
-        final String adUnitFormat = adData.getExtras().get(ADUNIT_FORMAT).toLowerCase(ENGLISH);
-        if (adUnitFormat.contains(ADUNIT_BANNER) || adUnitFormat.contains(ADUNIT_MEDIUM_RECTANGLE)) {
-            if (adUnitFormat.contains(ADUNIT_MEDIUM_RECTANGLE)) {
-                isMediumRectangle = true;
+        StartappSdkInitializer.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                loadWhenReady(context, adData);
+            }
+        });
+    }
+
+    private void loadWhenReady(@NonNull Context context, @NonNull AdData adData) {
+        final long traceNanos = StartappMainThreadBudget.begin();
+        try {
+            if (adData.isRewarded()) {
+                final Extras extras = Extras.compile(null, adData.getExtras(), false);
+                loadRewardedVideo(context, extras);
+                StartappWarmStart.remember(context, StartappLatency.Format.REWARDED, adData.getExtras(), extras);
+                return;
             }
 
-            loadBanner(context, adData);
+            final Extras extras = Extras.compile(null, adData.getExtras(), false);
+            switch (extras.getFormat()) {
+                case MEDIUM_RECTANGLE:
+                    isMediumRectangle = true;
+                    loadBanner(context, adData, extras);
+                    break;
+                case BANNER:
+                    loadBanner(context, adData, extras);
+                    break;
+                default:
+                    loadInterstitial(context, extras);
+                    break;
+            }
+
+            StartappWarmStart.remember(context, loadFormat, adData.getExtras(), extras);
+        } finally {
+            StartappMainThreadBudget.end(StartappMainThreadBudget.Point.LOAD, traceNanos);
+        }
+    }
+
+    /**
+     * @return true if the load was failed right away because there is no network
+     */
+    private boolean isOffline(@NonNull Context context) {
+        if (!StartappLoadScheduler.isOffline(context)) {
+            return false;
+        }
+
+        final MoPubErrorCode errorCode = MoPubErrorCode.NO_CONNECTION;
+
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_ATTEMPTED);
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_FAILED,
+                errorCode.getIntCode(),
+                errorCode);
+
+        if (mLoadListener != null) {
+            mLoadListener.onAdLoadFailed(errorCode);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the load was failed right away because the placement keeps returning no fill
+     */
+    private boolean isCircuitOpen(@NonNull Extras prefs) {
+        if (!StartappSettings.isNoFillCircuitBreakerEnabled()) {
+            breakerKey = null;
+            return false;
+        }
+
+        breakerKey = prefs.getBreakerKey(loadFormat);
+        if (StartappCircuitBreaker.allowRequest(breakerKey)) {
+            return false;
+        }
+
+        final MoPubErrorCode errorCode = MoPubErrorCode.NETWORK_NO_FILL;
+
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_ATTEMPTED);
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_FAILED,
+                errorCode.getIntCode(),
+                errorCode);
+
+        if (mLoadListener != null) {
+            mLoadListener.onAdLoadFailed(errorCode);
+        }
+
+        return true;
+    }
+
+    private void startLoadDeadline() {
+        if (!StartappSettings.isLoadDeadlinesEnabled()) {
+            return;
+        }
+
+        isLoadDeadlinePending = true;
+        handler.postDelayed(dispatcher, StartappSettings.getLoadDeadlineMillis(loadFormat));
+    }
+
+    /**
+     * @return false if the deadline has already failed the load, the SDK callback must then be ignored
+     */
+    private boolean finishLoad() {
+        if (isLoadTimedOut) {
+            return false;
+        }
+
+        if (isLoadDeadlinePending) {
+            handler.removeCallbacks(dispatcher);
+            isLoadDeadlinePending = false;
+        }
+
+        return true;
+    }
+
+    private void onLoadTimedOut() {
+        final MoPubErrorCode errorCode = MoPubErrorCode.NETWORK_TIMEOUT;
+
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_FAILED,
+                errorCode.getIntCode(),
+                errorCode);
+
+        StartappCircuitBreaker.onFailed(breakerKey, false);
+        StartappLatency.record(loadFormat, adTag, StartappLatency.Metric.LOAD_FAILURE, loadStartNanos);
+
+        refillPoolIfPending(false);
+
+        if (sharedLoadKey != null) {
+            StartappInterstitialPool.timeOutShared(sharedLoadKey, dispatcher);
+        }
+
+        startAppAd = null;
+        sharedLoadKey = null;
+        isRewardedVideoLoaded = false;
+
+        // the banner may still call back, it must not go back to the pool
+        if (bannerEntry != null) {
+            bannerEntry.listener.delegate = null;
+        }
+
+        Views.removeFromParent(bannerView);
+        isOffscreen = false;
+        bannerView = null;
+        bannerActivity = null;
+        bannerKey = null;
+        bannerEntry = null;
+
+        if (mLoadListener != null) {
+            mLoadListener.onAdLoadFailed(errorCode);
+        }
+    }
+
+    /**
+     * Loads a full screen ad, through {@link StartappInterstitialPool#loadShared} when coalescing is enabled.
+     */
+    private void loadFullscreen(@NonNull Context context, @Nullable StartAppAd.AdMode adMode, @NonNull Extras prefs) {
+        startLoadDeadline();
+
+        if (StartappSettings.isLoadCoalescingEnabled()) {
+            sharedLoadKey = prefs.getPoolKey(isRewarded);
+            StartappInterstitialPool.loadShared(context, sharedLoadKey, prefs, dispatcher);
         } else {
-            loadInterstitial(context, adData);
+            // the ad outlives the load Activity until it is shown, it must not keep it alive
+            startAppAd = new StartAppAd(context.getApplicationContext());
+
+            if (isRewarded) {
+                startAppAd.setVideoListener(dispatcher);
+            }
+
+            if (adMode == null) {
+                startAppAd.loadAd(prefs.getAdPreferences(), dispatcher);
+            } else {
+                startAppAd.loadAd(adMode, prefs.getAdPreferences(), dispatcher);
+            }
+        }
+
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_ATTEMPTED);
+    }
+
+    /**
+     * Serves a load with an ad that is already loaded.
+     */
+    private void loadedFromPool(@NonNull StartAppAd pooled) {
+        startAppAd = pooled;
+
+        if (isRewarded) {
+            startAppAd.setVideoListener(dispatcher);
         }
+
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_ATTEMPTED);
+        dispatcher.onReceiveAd(pooled);
     }
 
     @Override
@@ -428,319 +996,672 @@ public class StartappAdapter extends BaseAd {
             showInterstitial();
         }
     }
-    // endregion
 
-    // region Interstitial
-    private void loadInterstitial(@NonNull Context context, @NonNull AdData adData) {
-        setAutomaticImpressionAndClickTracking(false);
+    /**
+     * Receives every SDK callback of this adapter, created once per adapter instead of once per load or show.
+     * As a {@link Runnable} it fires the load deadline.
+     */
+    final class Dispatcher implements
+            AdEventListener,
+            AdDisplayListener,
+            VideoListener,
+            BannerListener,
+            View.OnAttachStateChangeListener,
+            StartappInterstitialPool.SharedLoadListener,
+            Runnable {
+
+        // region Load
+        @Override
+        public void onReceiveAd(@NonNull Ad ad) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                if (!finishLoad()) {
+                    return;
+                }
 
-        startAppAd = new StartAppAd(context);
-        final AdEventListener loadListener = new AdEventListener() {
-            @Override
-            public void onReceiveAd(@NonNull Ad ad) {
-                MoPubLog.log(AD_NETWORK_ID, LOAD_SUCCESS, LOG_TAG);
+                if (isRewarded) {
+                    isRewardedVideoLoaded = true;
+                }
+
+                StartappLog.event(loadFormat, LOG_TAG, LOAD_SUCCESS);
+
+                StartappCircuitBreaker.onLoaded(breakerKey);
+                StartappLatency.record(loadFormat, adTag, StartappLatency.Metric.LOAD_SUCCESS, loadStartNanos);
+
+                refillPoolIfPending(true);
 
                 if (mLoadListener != null) {
                     mLoadListener.onAdLoaded();
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.ON_RECEIVE_AD, traceNanos);
             }
+        }
 
-            @Override
-            public void onFailedToReceiveAd(@NonNull Ad ad) {
-                final String message = ad.getErrorMessage();
-                final MoPubErrorCode errorCode = (message != null && (message.contains("204") || message.contains("Empty Response")))
+        @Override
+        public void onFailedToReceiveAd(@NonNull Ad ad) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                if (!finishLoad()) {
+                    return;
+                }
+
+                final MoPubErrorCode errorCode = StartappErrors.isNoFill(ad.getErrorMessage())
                         ? MoPubErrorCode.NETWORK_NO_FILL
                         : MoPubErrorCode.UNSPECIFIED;
 
-                MoPubLog.log(AD_NETWORK_ID, LOAD_FAILED, LOG_TAG,
+                StartappLog.event(loadFormat, LOG_TAG, LOAD_FAILED,
                         errorCode.getIntCode(),
                         errorCode);
 
+                StartappCircuitBreaker.onFailed(breakerKey, errorCode == MoPubErrorCode.NETWORK_NO_FILL);
+                StartappLatency.record(loadFormat, adTag, StartappLatency.Metric.LOAD_FAILURE, loadStartNanos);
+
+                refillPoolIfPending(false);
+
                 if (mLoadListener != null) {
                     mLoadListener.onAdLoadFailed(errorCode);
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.ON_FAILED_TO_RECEIVE_AD, traceNanos);
             }
-        };
-
-        final Extras prefs = new Extras(null, adData.getExtras(), false);
-        if (prefs.getAdMode() == null) {
-            startAppAd.loadAd(prefs.getAdPreferences(), loadListener);
-        } else {
-            startAppAd.loadAd(prefs.getAdMode(), prefs.getAdPreferences(), loadListener);
         }
 
-        MoPubLog.log(AD_NETWORK_ID, LOAD_ATTEMPTED, LOG_TAG);
-    }
+        @Override
+        public void onLoaded(@NonNull StartAppAd loaded, @NonNull Ad ad) {
+            if (isRewarded) {
+                loaded.setVideoListener(this);
+            }
 
-    private void showInterstitial() {
-        if (startAppAd == null) {
-            return;
+            startAppAd = loaded;
+            onReceiveAd(ad);
         }
 
-        MoPubLog.log(AD_NETWORK_ID, SHOW_ATTEMPTED, LOG_TAG);
-
-        if (!startAppAd.isReady()) {
-            final MoPubErrorCode errorCode = MoPubErrorCode.FULLSCREEN_SHOW_ERROR;
+        @Override
+        public void onFailed(@NonNull Ad ad) {
+            onFailedToReceiveAd(ad);
+        }
 
-            MoPubLog.log(AD_NETWORK_ID, SHOW_FAILED, LOG_TAG,
-                    errorCode.getIntCode(),
-                    errorCode);
+        @Override
+        public void onTimedOut() {
+            if (isLoadTimedOut) {
+                return;
+            }
 
-            if (mInteractionListener != null) {
-                mInteractionListener.onAdFailed(errorCode);
+            if (isLoadDeadlinePending) {
+                handler.removeCallbacks(this);
             }
 
-            return;
+            // the shared load already dropped its waiters
+            sharedLoadKey = null;
+            run();
         }
 
-        startAppAd.showAd(new AdDisplayListener() {
-            @Override
-            public void adHidden(@NonNull Ad ad) {
-                MoPubLog.log(AD_NETWORK_ID, DID_DISAPPEAR, LOG_TAG);
+        @Override
+        public void run() {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                isLoadDeadlinePending = false;
+                isLoadTimedOut = true;
+
+                onLoadTimedOut();
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.LOAD_DEADLINE, traceNanos);
+            }
+        }
+        // endregion
+
+        // region Show
+        @Override
+        public void adHidden(@NonNull Ad ad) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                StartappLog.event(loadFormat, LOG_TAG, DID_DISAPPEAR);
 
                 if (mInteractionListener != null) {
                     mInteractionListener.onAdDismissed();
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.AD_HIDDEN, traceNanos);
             }
+        }
 
-            @Override
-            public void adDisplayed(@NonNull Ad ad) {
-                MoPubLog.log(AD_NETWORK_ID, SHOW_SUCCESS, LOG_TAG);
+        @Override
+        public void adDisplayed(@NonNull Ad ad) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                StartappLog.event(loadFormat, LOG_TAG, SHOW_SUCCESS);
+
+                StartappLatency.record(loadFormat, adTag, StartappLatency.Metric.SHOW, showStartNanos);
 
+                // the displayed callback is the only impression signal of a fullscreen ad, no IMPRESSION is recorded
                 if (mInteractionListener != null) {
                     mInteractionListener.onAdShown();
                     mInteractionListener.onAdImpression();
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.AD_DISPLAYED, traceNanos);
             }
+        }
 
-            @Override
-            public void adClicked(@NonNull Ad ad) {
-                MoPubLog.log(AD_NETWORK_ID, CLICKED, LOG_TAG);
+        @Override
+        public void adClicked(@NonNull Ad ad) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                StartappLog.event(loadFormat, LOG_TAG, CLICKED);
 
                 if (mInteractionListener != null) {
                     mInteractionListener.onAdClicked();
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.AD_CLICKED, traceNanos);
             }
+        }
 
-            @Override
-            public void adNotDisplayed(@NonNull Ad ad) {
-                MoPubLog.log(AD_NETWORK_ID, SHOW_FAILED, LOG_TAG);
+        @Override
+        public void adNotDisplayed(@NonNull Ad ad) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                final MoPubErrorCode errorCode = isRewarded
+                        ? MoPubErrorCode.VIDEO_PLAYBACK_ERROR
+                        : MoPubErrorCode.FULLSCREEN_SHOW_ERROR;
+
+                StartappLog.event(loadFormat, LOG_TAG, SHOW_FAILED,
+                        errorCode.getIntCode(),
+                        errorCode);
 
                 if (mInteractionListener != null) {
-                    mInteractionListener.onAdFailed(MoPubErrorCode.FULLSCREEN_SHOW_ERROR);
+                    mInteractionListener.onAdFailed(errorCode);
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.AD_NOT_DISPLAYED, traceNanos);
             }
-        });
-    }
-    // endregion
-
-    // region Rewarded
-    private boolean isRewarded;
-    private boolean isRewardedVideoLoaded;
-
-    private void loadRewardedVideo(@NonNull Context context, @NonNull AdData adData) {
-        isRewarded = true;
+        }
 
-        startAppAd = new StartAppAd(context);
-        startAppAd.setVideoListener(new VideoListener() {
-            @Override
-            public void onVideoCompleted() {
-                MoPubLog.log(getAdNetworkId(), SHOULD_REWARD, LOG_TAG);
+        @Override
+        public void onVideoCompleted() {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                StartappLog.event(loadFormat, LOG_TAG, SHOULD_REWARD);
 
                 if (mInteractionListener != null) {
                     mInteractionListener.onAdComplete(MoPubReward.success(
                             MoPubReward.NO_REWARD_LABEL,
                             MoPubReward.DEFAULT_REWARD_AMOUNT));
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.VIDEO_COMPLETED, traceNanos);
             }
-        });
+        }
+        // endregion
+
+        // region Banner
+        @Override
+        public void onReceiveAd(@NonNull View view) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                if (!finishLoad()) {
+                    return;
+                }
 
-        final AdEventListener loadListener = new AdEventListener() {
-            @Override
-            public void onReceiveAd(@NonNull Ad ad) {
-                isRewardedVideoLoaded = true;
+                detachOffscreen();
+
+                StartappLog.event(loadFormat, LOG_TAG, LOAD_SUCCESS);
+                StartappLog.event(loadFormat, LOG_TAG, SHOW_ATTEMPTED);
+
+                StartappCircuitBreaker.onLoaded(breakerKey);
 
-                MoPubLog.log(getAdNetworkId(), LOAD_SUCCESS, LOG_TAG);
+                StartappLatency.record(StartappLatency.Format.BANNER, adTag, StartappLatency.Metric.LOAD_SUCCESS, loadStartNanos);
+
+                // MoPub shows the banner by adding it to its view after onAdLoaded
+                watchDisplay();
 
                 if (mLoadListener != null) {
                     mLoadListener.onAdLoaded();
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.BANNER_ON_RECEIVE_AD, traceNanos);
             }
+        }
 
-            @Override
-            public void onFailedToReceiveAd(@NonNull Ad ad) {
-                final String message = ad.getErrorMessage();
-                final MoPubErrorCode errorCode = (message != null && (message.contains("204") || message.contains("Empty Response")))
-                        ? MoPubErrorCode.NETWORK_NO_FILL
-                        : MoPubErrorCode.UNSPECIFIED;
+        @Override
+        public void onFailedToReceiveAd(@NonNull View view) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                if (!finishLoad()) {
+                    return;
+                }
 
-                MoPubLog.log(getAdNetworkId(), LOAD_FAILED, LOG_TAG,
-                        errorCode.getIntCode(),
-                        errorCode);
+                detachOffscreen();
 
-                if (mLoadListener != null) {
-                    mLoadListener.onAdLoadFailed(errorCode);
+                StartappCircuitBreaker.onFailed(breakerKey, true);
+                bannerLoadingFailed(MoPubErrorCode.NETWORK_NO_FILL);
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.BANNER_ON_FAILED_TO_RECEIVE_AD, traceNanos);
+            }
+        }
+
+        @Override
+        public void onImpression(@NonNull View view) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                StartappLog.event(loadFormat, LOG_TAG, SHOW_SUCCESS);
+
+                if (displayedNanos != 0) {
+                    StartappLatency.record(StartappLatency.Format.BANNER, adTag, StartappLatency.Metric.IMPRESSION, displayedNanos);
+                    displayedNanos = 0;
+                }
+
+                if (mInteractionListener != null) {
+                    mInteractionListener.onAdImpression();
                 }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.BANNER_ON_IMPRESSION, traceNanos);
             }
-        };
+        }
 
-        final Extras prefs = new Extras(null, adData.getExtras(), false);
-        startAppAd.loadAd(StartAppAd.AdMode.REWARDED_VIDEO, prefs.getAdPreferences(), loadListener);
+        @Override
+        public void onClick(@NonNull View view) {
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                StartappLog.event(loadFormat, LOG_TAG, CLICKED);
+                StartappLog.event(loadFormat, LOG_TAG, WILL_LEAVE_APPLICATION);
+
+                if (mInteractionListener != null) {
+                    mInteractionListener.onAdClicked();
+                }
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.BANNER_ON_CLICK, traceNanos);
+            }
+        }
 
-        MoPubLog.log(getAdNetworkId(), LOAD_ATTEMPTED, LOG_TAG);
+        @Override
+        public void onViewAttachedToWindow(@NonNull View view) {
+            view.removeOnAttachStateChangeListener(this);
+            displayedNanos = System.nanoTime();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(@NonNull View view) {
+        }
+        // endregion
     }
+    // endregion
 
-    private void showRewardedVideo() {
-        MoPubLog.log(getAdNetworkId(), SHOW_ATTEMPTED, LOG_TAG);
+    // region Interstitial
+    // pool to refill once this adapter's own load succeeded, so that a pool miss costs a single load at first
+    @Nullable
+    private Context poolContext;
 
-        if (startAppAd == null || !isRewardedVideoLoaded) {
-            final MoPubErrorCode errorCode = MoPubErrorCode.VIDEO_DOWNLOAD_ERROR;
-            MoPubLog.log(getAdNetworkId(), SHOW_FAILED, LOG_TAG,
-                    errorCode.getIntCode(),
-                    errorCode);
+    @Nullable
+    private StartappInterstitialPool.Key poolKey;
+
+    @Nullable
+    private Extras poolExtras;
+
+    private void loadInterstitial(@NonNull Context context, @NonNull Extras prefs) {
+        setAutomaticImpressionAndClickTracking(false);
+
+        adTag = prefs.getAdTag();
+        loadFormat = StartappLatency.Format.INTERSTITIAL;
+        loadStartNanos = System.nanoTime();
 
-            if (mInteractionListener != null) {
-                mInteractionListener.onAdFailed(errorCode);
+        if (StartappSettings.isInterstitialPoolEnabled()) {
+            final StartappInterstitialPool.Key key = prefs.getPoolKey(false);
+
+            final StartAppAd pooled = StartappInterstitialPool.take(key);
+            if (pooled != null) {
+                StartappInterstitialPool.refill(context, key, prefs);
+                loadedFromPool(pooled);
+                return;
             }
 
+            poolContext = context.getApplicationContext();
+            poolKey = key;
+            poolExtras = prefs;
+        }
+
+        if (isOffline(context) || isCircuitOpen(prefs)) {
             return;
         }
 
-        startAppAd.showAd(new AdDisplayListener() {
-            @Override
-            public void adHidden(@NonNull Ad ad) {
-                MoPubLog.log(getAdNetworkId(), DID_DISAPPEAR, LOG_TAG);
+        loadFullscreen(context, prefs.getAdMode(), prefs);
+    }
 
-                if (mInteractionListener != null) {
-                    mInteractionListener.onAdDismissed();
-                }
+    private void refillPoolIfPending(boolean isLoaded) {
+        if (isLoaded && poolContext != null && poolKey != null && poolExtras != null) {
+            StartappInterstitialPool.refill(poolContext, poolKey, poolExtras);
+        }
+
+        poolContext = null;
+        poolKey = null;
+        poolExtras = null;
+    }
+
+    private void showInterstitial() {
+        final long traceNanos = StartappMainThreadBudget.begin();
+        try {
+            if (startAppAd == null) {
+                return;
             }
 
-            @Override
-            public void adDisplayed(@NonNull Ad ad) {
-                MoPubLog.log(getAdNetworkId(), SHOW_SUCCESS, LOG_TAG);
+            StartappLog.event(loadFormat, LOG_TAG, SHOW_ATTEMPTED);
+
+            showStartNanos = System.nanoTime();
+
+            if (!startAppAd.isReady()) {
+                final MoPubErrorCode errorCode = MoPubErrorCode.FULLSCREEN_SHOW_ERROR;
+
+                StartappLog.event(loadFormat, LOG_TAG, SHOW_FAILED,
+                        errorCode.getIntCode(),
+                        errorCode);
 
                 if (mInteractionListener != null) {
-                    mInteractionListener.onAdShown();
-                    mInteractionListener.onAdImpression();
+                    mInteractionListener.onAdFailed(errorCode);
                 }
+
+                return;
             }
 
-            @Override
-            public void adClicked(@NonNull Ad ad) {
-                MoPubLog.log(getAdNetworkId(), CLICKED, LOG_TAG);
+            startAppAd.showAd(dispatcher);
+        } finally {
+            StartappMainThreadBudget.end(StartappMainThreadBudget.Point.SHOW_INTERSTITIAL, traceNanos);
+        }
+    }
+    // endregion
 
-                if (mInteractionListener != null) {
-                    mInteractionListener.onAdClicked();
-                }
+    // region Rewarded
+    private boolean isRewarded;
+    private boolean isRewardedVideoLoaded;
+
+    @Nullable
+    private Context rewardedContext;
+
+    @Nullable
+    private StartappInterstitialPool.Key rewardedKey;
+
+    @Nullable
+    private Extras rewardedExtras;
+
+    private void loadRewardedVideo(@NonNull Context context, @NonNull Extras prefs) {
+        isRewarded = true;
+
+        adTag = prefs.getAdTag();
+        loadFormat = StartappLatency.Format.REWARDED;
+        loadStartNanos = System.nanoTime();
+
+        if (StartappSettings.isRewardedPipelineEnabled()) {
+            rewardedContext = context.getApplicationContext();
+            rewardedKey = prefs.getPoolKey(true);
+            rewardedExtras = prefs;
+
+            final StartAppAd pooled = StartappInterstitialPool.take(rewardedKey);
+            if (pooled != null) {
+                loadedFromPool(pooled);
+                return;
             }
+        }
 
-            @Override
-            public void adNotDisplayed(@NonNull Ad ad) {
-                MoPubLog.log(getAdNetworkId(), SHOW_FAILED, LOG_TAG);
+        if (isOffline(context) || isCircuitOpen(prefs)) {
+            return;
+        }
+
+        loadFullscreen(context, StartAppAd.AdMode.REWARDED_VIDEO, prefs);
+    }
+
+    private void showRewardedVideo() {
+        final long traceNanos = StartappMainThreadBudget.begin();
+        try {
+            StartappLog.event(loadFormat, LOG_TAG, SHOW_ATTEMPTED);
+
+            showStartNanos = System.nanoTime();
+
+            if (startAppAd == null || !isRewardedVideoLoaded) {
+                final MoPubErrorCode errorCode = MoPubErrorCode.VIDEO_DOWNLOAD_ERROR;
+                StartappLog.event(loadFormat, LOG_TAG, SHOW_FAILED,
+                        errorCode.getIntCode(),
+                        errorCode);
 
                 if (mInteractionListener != null) {
-                    mInteractionListener.onAdFailed(MoPubErrorCode.VIDEO_PLAYBACK_ERROR);
+                    mInteractionListener.onAdFailed(errorCode);
                 }
+
+                return;
             }
-        });
+
+            if (rewardedContext != null && rewardedKey != null && rewardedExtras != null) {
+                StartappInterstitialPool.prefetch(
+                        rewardedContext,
+                        rewardedKey,
+                        rewardedExtras,
+                        StartappSettings.getRewardedPrefetchDepth());
+            }
+
+            startAppAd.showAd(dispatcher);
+        } finally {
+            StartappMainThreadBudget.end(StartappMainThreadBudget.Point.SHOW_REWARDED, traceNanos);
+        }
     }
     // endregion
 
     // region Banner
     private boolean isMediumRectangle;
 
+    private int bannerWidth;
+    private int bannerHeight;
+
     @Nullable
     private FrameLayout bannerView;
 
-    private void loadBanner(@NonNull Context context, @NonNull AdData adData) {
-        if (!(context instanceof Activity)) {
-            if (mLoadListener != null) {
-                mLoadListener.onAdLoadFailed(MoPubErrorCode.ADAPTER_CONFIGURATION_ERROR);
-            }
-            return;
-        }
+    @Nullable
+    private WeakReference<Activity> bannerActivity;
 
-        if (adData.getAdWidth() == null || adData.getAdHeight() == null) {
-            bannerLoadingFailed(MoPubErrorCode.ADAPTER_CONFIGURATION_ERROR);
-            return;
-        }
+    @Nullable
+    private StartappBannerPool.Key bannerKey;
 
-        bannerView = new FrameLayout(context);
+    @Nullable
+    private StartappBannerPool.Entry bannerEntry;
 
-        final BannerListener loadListener = new BannerListener() {
-            @Override
-            public void onReceiveAd(@NonNull View view) {
-                MoPubLog.log(AD_NETWORK_ID, LOAD_SUCCESS, LOG_TAG);
-                MoPubLog.log(AD_NETWORK_ID, SHOW_ATTEMPTED, LOG_TAG);
+    private void loadBanner(@NonNull Context context, @NonNull AdData adData, @NonNull Extras prefs) {
+        final long traceNanos = StartappMainThreadBudget.begin();
+        try {
+            loadFormat = StartappLatency.Format.BANNER;
 
+            if (!(context instanceof Activity)) {
                 if (mLoadListener != null) {
-                    mLoadListener.onAdLoaded();
+                    mLoadListener.onAdLoadFailed(MoPubErrorCode.ADAPTER_CONFIGURATION_ERROR);
                 }
+                return;
             }
 
-            @Override
-            public void onFailedToReceiveAd(@NonNull View view) {
-                bannerLoadingFailed(MoPubErrorCode.NETWORK_NO_FILL);
+            if (adData.getAdWidth() == null || adData.getAdHeight() == null) {
+                bannerLoadingFailed(MoPubErrorCode.ADAPTER_CONFIGURATION_ERROR);
+                return;
             }
 
-            @Override
-            public void onImpression(@NonNull View view) {
-                MoPubLog.log(AD_NETWORK_ID, SHOW_SUCCESS, LOG_TAG);
+            setAutomaticImpressionAndClickTracking(false);
 
-                if (mInteractionListener != null) {
-                    mInteractionListener.onAdImpression();
-                }
+            if (isOffline(context)) {
+                return;
             }
 
-            @Override
-            public void onClick(@NonNull View view) {
-                MoPubLog.log(AD_NETWORK_ID, CLICKED, LOG_TAG);
-                MoPubLog.log(AD_NETWORK_ID, WILL_LEAVE_APPLICATION, LOG_TAG);
+            // on low battery MoPub's refreshes are skipped, the current banner stays on screen.
+            // Checked before the circuit breaker, whose half-open probe would otherwise be taken and never reported
+            if (!StartappLoadScheduler.allowsBannerLoad(context, prefs)) {
+                bannerLoadingFailed(MoPubErrorCode.NETWORK_NO_FILL);
+                return;
+            }
 
-                if (mInteractionListener != null) {
-                    mInteractionListener.onAdClicked();
+            if (isCircuitOpen(prefs)) {
+                return;
+            }
+
+            adTag = prefs.getAdTag();
+            loadStartNanos = System.nanoTime();
+
+            final Activity activity = (Activity) context;
+            bannerWidth = adData.getAdWidth();
+            bannerHeight = adData.getAdHeight();
+
+            startLoadDeadline();
+
+            if (StartappSettings.isBannerRecyclingEnabled()) {
+                bannerActivity = new WeakReference<>(activity);
+                bannerKey = new StartappBannerPool.Key(prefs, bannerWidth, bannerHeight);
+                bannerEntry = StartappBannerPool.acquire(activity, bannerKey);
+
+                if (bannerEntry != null) {
+                    bannerEntry.listener.delegate = dispatcher;
+                    bannerEntry.banner.loadAd(bannerWidth, bannerHeight);
+                } else {
+                    final StartappBannerPool.ForwardingBannerListener forwardingListener =
+                            new StartappBannerPool.ForwardingBannerListener();
+                    forwardingListener.delegate = dispatcher;
+
+                    final BannerBase banner = chooseBanner(activity, prefs, forwardingListener);
+                    banner.loadAd(bannerWidth, bannerHeight);
+
+                    bannerEntry = new StartappBannerPool.Entry(
+                            wrapBanner(activity, banner, bannerWidth, bannerHeight),
+                            banner,
+                            forwardingListener);
                 }
+
+                bannerView = bannerEntry.container;
+            } else {
+                final BannerBase banner = chooseBanner(activity, prefs, dispatcher);
+                banner.loadAd(bannerWidth, bannerHeight);
+
+                bannerView = wrapBanner(activity, banner, bannerWidth, bannerHeight);
             }
-        };
 
-        final BannerBase banner = chooseBanner(context, adData.getExtras(), loadListener);
-        banner.loadAd(adData.getAdWidth(), adData.getAdHeight());
+            if (StartappSettings.isBannerDoubleBufferingEnabled()) {
+                attachOffscreen(activity);
+            }
 
-        // force banner to calculate its view size
+            StartappLog.event(loadFormat, LOG_TAG, LOAD_ATTEMPTED);
+        } finally {
+            StartappMainThreadBudget.end(StartappMainThreadBudget.Point.LOAD_BANNER, traceNanos);
+        }
+    }
+
+    /**
+     * Takes the displayed time of the banner when it is attached to MoPub's view,
+     * the start of the displayed-to-impression latency.
+     */
+    private void watchDisplay() {
+        displayedNanos = 0;
+        if (bannerView == null) {
+            return;
+        }
+
+        if (bannerView.getWindowToken() != null) {
+            displayedNanos = System.nanoTime();
+            return;
+        }
+
+        bannerView.removeOnAttachStateChangeListener(dispatcher);
+        bannerView.addOnAttachStateChangeListener(dispatcher);
+    }
+
+    private boolean isOffscreen;
+
+    /**
+     * Lets the banner load and lay out in the window while it is outside of the visible area,
+     * so that it is already rendered when MoPub swaps it in.
+     */
+    private void attachOffscreen(@NonNull Activity activity) {
+        if (bannerView == null || bannerView.getParent() != null) {
+            return;
+        }
+
+        final View decorView = activity.getWindow() != null ? activity.getWindow().getDecorView() : null;
+        if (!(decorView instanceof ViewGroup)) {
+            return;
+        }
+
+        final int widthPx = dpToPx(activity, bannerWidth);
+        final int heightPx = dpToPx(activity, bannerHeight);
+
+        bannerView.setTranslationX(-2 * widthPx);
+        ((ViewGroup) decorView).addView(bannerView, new FrameLayout.LayoutParams(widthPx, heightPx));
+        isOffscreen = true;
+    }
+
+    private void detachOffscreen() {
+        if (!leaveOffscreen()) {
+            return;
+        }
+
+        // measure ahead at the final size, the swap then hits the measure cache
+        final int widthPx = dpToPx(bannerView.getContext(), bannerWidth);
+        final int heightPx = dpToPx(bannerView.getContext(), bannerHeight);
+        bannerView.measure(
+                View.MeasureSpec.makeMeasureSpec(widthPx, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(heightPx, View.MeasureSpec.EXACTLY));
+        bannerView.layout(0, 0, widthPx, heightPx);
+    }
+
+    /**
+     * Takes the banner out of the window and undoes the offscreen placement, so it can be shown or pooled.
+     *
+     * @return false if the banner was not offscreen
+     */
+    private boolean leaveOffscreen() {
+        if (!isOffscreen || bannerView == null) {
+            return false;
+        }
+
+        isOffscreen = false;
+
+        Views.removeFromParent(bannerView);
+        bannerView.setTranslationX(0);
         bannerView.setLayoutParams(new FrameLayout.LayoutParams(
                 FrameLayout.LayoutParams.MATCH_PARENT,
                 FrameLayout.LayoutParams.MATCH_PARENT));
 
-        bannerView.addView(banner, new FrameLayout.LayoutParams(
-                dpToPx(context, adData.getAdWidth()),
-                dpToPx(context, adData.getAdHeight()),
+        return true;
+    }
+
+    @NonNull
+    private static FrameLayout wrapBanner(@NonNull Context context, @NonNull BannerBase banner, int width, int height) {
+        final FrameLayout result = new FrameLayout(context);
+
+        // force banner to calculate its view size
+        result.setLayoutParams(new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT,
+                FrameLayout.LayoutParams.MATCH_PARENT));
+
+        result.addView(banner, new FrameLayout.LayoutParams(
+                dpToPx(context, width),
+                dpToPx(context, height),
                 Gravity.CENTER));
+
+        return result;
     }
 
     @NonNull
     private BannerBase chooseBanner(
-            @NonNull Context context,
-            @Nullable Map<String, String> extras,
+            @NonNull Activity activity,
+            @NonNull Extras prefs,
             @NonNull BannerListener listener
     ) {
-        setAutomaticImpressionAndClickTracking(false);
-
-        final Extras prefs = new Extras(null, extras, false);
-        final Activity activity = (Activity) context;
-        final BannerBase result;
+        final long traceNanos = StartappMainThreadBudget.begin();
+        try {
+            final BannerBase result;
+
+            if (isMediumRectangle) {
+                result = new Mrec(activity, prefs.getAdPreferences(), listener);
+            } else if (prefs.is3DBanner()) {
+                result = new Banner3D(activity, prefs.getAdPreferences(), listener);
+            } else {
+                result = new Banner(activity, prefs.getAdPreferences(), listener);
+            }
 
-        if (isMediumRectangle) {
-            result = new Mrec(activity, prefs.getAdPreferences(), listener);
-        } else if (prefs.is3DBanner()) {
-            result = new Banner3D(activity, prefs.getAdPreferences(), listener);
-        } else {
-            result = new Banner(activity, prefs.getAdPreferences(), listener);
+            return result;
+        } finally {
+            StartappMainThreadBudget.end(StartappMainThreadBudget.Point.CHOOSE_BANNER, traceNanos);
         }
-
-        MoPubLog.log(AD_NETWORK_ID, LOAD_ATTEMPTED, LOG_TAG);
-
-        return result;
     }
 
     private static int dpToPx(@NonNull Context context, int dp) {
@@ -749,10 +1670,12 @@ public class StartappAdapter extends BaseAd {
     }
 
     private void bannerLoadingFailed(@NonNull MoPubErrorCode code) {
-        MoPubLog.log(AD_NETWORK_ID, LOAD_FAILED, LOG_TAG,
+        StartappLog.event(loadFormat, LOG_TAG, LOAD_FAILED,
                 code.getIntCode(),
                 code);
 
+        StartappLatency.record(StartappLatency.Format.BANNER, adTag, StartappLatency.Metric.LOAD_FAILURE, loadStartNanos);
+
         if (mLoadListener != null) {
             mLoadListener.onAdLoadFailed(code);
         }
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.util.Views;
+import com.startapp.sdk.ads.banner.BannerBase;
+import com.startapp.sdk.ads.banner.BannerListener;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Banner containers and their {@link BannerBase} kept for reuse across refreshes,
+ * keyed by (compiled Extras, width, height) per Activity and dropped when the Activity is destroyed.
+ * Must be used on the main thread.
+ */
+final class StartappBannerPool {
+    private static final int MAX_PER_KEY = 2;
+
+    private static final Map<Activity, Map<Key, ArrayDeque<Entry>>> pools = new HashMap<>();
+    private static final Map<Application, LifecycleCallbacks> callbacks = new HashMap<>();
+
+    private StartappBannerPool() {
+    }
+
+    static final class Entry {
+        @NonNull
+        final FrameLayout container;
+
+        @NonNull
+        final BannerBase banner;
+
+        @NonNull
+        final ForwardingBannerListener listener;
+
+        Entry(@NonNull FrameLayout container, @NonNull BannerBase banner, @NonNull ForwardingBannerListener listener) {
+            this.container = container;
+            this.banner = banner;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Lets a pooled banner report to whichever adapter currently owns it.
+     */
+    static final class ForwardingBannerListener implements BannerListener {
+        @Nullable
+        BannerListener delegate;
+
+        @Override
+        public void onReceiveAd(@NonNull View view) {
+            if (delegate != null) {
+                delegate.onReceiveAd(view);
+            }
+        }
+
+        @Override
+        public void onFailedToReceiveAd(@NonNull View view) {
+            if (delegate != null) {
+                delegate.onFailedToReceiveAd(view);
+            }
+        }
+
+        @Override
+        public void onImpression(@NonNull View view) {
+            if (delegate != null) {
+                delegate.onImpression(view);
+            }
+        }
+
+        @Override
+        public void onClick(@NonNull View view) {
+            if (delegate != null) {
+                delegate.onClick(view);
+            }
+        }
+    }
+
+    static final class Key {
+        @NonNull
+        final StartappAdapter.Extras extras;
+
+        final int width;
+        final int height;
+
+        Key(@NonNull StartappAdapter.Extras extras, int width, int height) {
+            this.extras = extras;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return width == key.width && height == key.height && extras == key.extras;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(extras);
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+    }
+
+    @Nullable
+    static Entry acquire(@NonNull Activity activity, @NonNull Key key) {
+        final Map<Key, ArrayDeque<Entry>> pool = pools.get(activity);
+        if (pool == null) {
+            return null;
+        }
+
+        final ArrayDeque<Entry> entries = pool.get(key);
+        return entries != null ? entries.pollFirst() : null;
+    }
+
+    static void release(@NonNull Activity activity, @NonNull Key key, @NonNull Entry entry) {
+        entry.listener.delegate = null;
+        Views.removeFromParent(entry.container);
+
+        // a destroyed Activity gets no more lifecycle callbacks to clear its pool
+        if (activity.isFinishing() || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed())) {
+            clear(activity);
+            return;
+        }
+
+        Map<Key, ArrayDeque<Entry>> pool = pools.get(activity);
+        if (pool == null) {
+            pool = new HashMap<>();
+            pools.put(activity, pool);
+            registerCallbacks(activity.getApplication());
+        }
+
+        ArrayDeque<Entry> entries = pool.get(key);
+        if (entries == null) {
+            entries = new ArrayDeque<>(MAX_PER_KEY);
+            pool.put(key, entries);
+        }
+
+        if (entries.size() < MAX_PER_KEY) {
+            entries.addLast(entry);
+        }
+    }
+
+    static void clear(@NonNull Activity activity) {
+        pools.remove(activity);
+    }
+
+    private static void registerCallbacks(@Nullable Application application) {
+        if (application == null || callbacks.containsKey(application)) {
+            return;
+        }
+
+        final LifecycleCallbacks lifecycleCallbacks = new LifecycleCallbacks();
+        callbacks.put(application, lifecycleCallbacks);
+        application.registerActivityLifecycleCallbacks(lifecycleCallbacks);
+    }
+
+    private static final class LifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+            clear(activity);
+        }
+
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fails loads of a placement right away once it returned no fill {@link StartappSettings#getNoFillThreshold()}
+ * times in a row. After {@link StartappSettings#getNoFillCoolDownMillis()} a single probe load is let through,
+ * it closes the circuit on fill and restarts the cool-down on another no fill.
+ */
+@Keep
+public final class StartappCircuitBreaker {
+    private static final int MAX_KEYS = 64;
+
+    private static final Map<Key, State> states = new LinkedHashMap<Key, State>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, State> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+
+    private StartappCircuitBreaker() {
+    }
+
+    @Keep
+    public static final class Key {
+        @NonNull
+        private final StartappLatency.Format format;
+
+        @Nullable
+        private final String adTag;
+
+        @Nullable
+        private final Double minCPM;
+
+        public Key(@NonNull StartappLatency.Format format, @Nullable String adTag, @Nullable Double minCPM) {
+            this.format = format;
+            this.adTag = adTag;
+            this.minCPM = minCPM;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return format == key.format
+                    && (adTag != null ? adTag.equals(key.adTag) : key.adTag == null)
+                    && (minCPM != null ? minCPM.equals(key.minCPM) : key.minCPM == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = format.hashCode();
+            result = 31 * result + (adTag != null ? adTag.hashCode() : 0);
+            result = 31 * result + (minCPM != null ? minCPM.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private static final class State {
+        int consecutiveNoFills;
+        long openedAt;
+        long probeStartedAt;
+    }
+
+    /**
+     * @return false if the load must fail with no fill without reaching the network
+     */
+    public static boolean allowRequest(@NonNull Key key) {
+        if (!StartappSettings.isNoFillCircuitBreakerEnabled()) {
+            return true;
+        }
+
+        synchronized (states) {
+            final State state = states.get(key);
+            if (state == null || state.openedAt == 0) {
+                return true;
+            }
+
+            final long now = SystemClock.elapsedRealtime();
+            final long coolDown = StartappSettings.getNoFillCoolDownMillis();
+
+            if (now - state.openedAt < coolDown) {
+                return false;
+            }
+
+            // a probe that never reported back is given up after another cool-down
+            if (state.probeStartedAt != 0 && now - state.probeStartedAt < coolDown) {
+                return false;
+            }
+
+            state.probeStartedAt = now;
+            return true;
+        }
+    }
+
+    public static void onLoaded(@Nullable Key key) {
+        if (key == null || !StartappSettings.isNoFillCircuitBreakerEnabled()) {
+            return;
+        }
+
+        synchronized (states) {
+            states.remove(key);
+        }
+    }
+
+    public static void onFailed(@Nullable Key key, boolean isNoFill) {
+        if (key == null || !StartappSettings.isNoFillCircuitBreakerEnabled()) {
+            return;
+        }
+
+        synchronized (states) {
+            State state = states.get(key);
+
+            if (!isNoFill) {
+                if (state != null) {
+                    state.probeStartedAt = 0;
+                }
+                return;
+            }
+
+            if (state == null) {
+                state = new State();
+                states.put(key, state);
+            }
+
+            state.probeStartedAt = 0;
+            if (++state.consecutiveNoFills >= StartappSettings.getNoFillThreshold()) {
+                state.openedAt = SystemClock.elapsedRealtime();
+            }
+        }
+    }
+
+    public static void reset() {
+        synchronized (states) {
+            states.clear();
+        }
+    }
+}
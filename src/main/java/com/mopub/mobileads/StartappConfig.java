@@ -37,10 +37,24 @@ public class StartappConfig extends BaseAdapterConfiguration {
         return AD_NETWORK_ID;
     }
 
+    @Nullable
+    private static volatile String networkSdkVersion;
+
     @NonNull
     @Override
-    @SuppressWarnings("JavaReflectionMemberAccess")
     public String getNetworkSdkVersion() {
+        String result = networkSdkVersion;
+        if (result == null) {
+            result = resolveNetworkSdkVersion();
+            networkSdkVersion = result;
+        }
+
+        return result;
+    }
+
+    @NonNull
+    @SuppressWarnings("JavaReflectionMemberAccess")
+    private static String resolveNetworkSdkVersion() {
         String result = null;
 
         try {
@@ -62,6 +76,10 @@ public class StartappConfig extends BaseAdapterConfiguration {
         return result != null ? result : "0";
     }
 
+    static void resetForTesting() {
+        networkSdkVersion = null;
+    }
+
     @Override
     public void initializeNetwork(
             @NonNull Context context,
@@ -70,9 +88,14 @@ public class StartappConfig extends BaseAdapterConfiguration {
     ) {
         final String appId = configuration != null ? configuration.get("startappAppId") : null;
         if (appId != null) {
+            StartappFlightRecorder.record(null, StartappFlightRecorder.Event.INIT_STARTED, 0);
+
             StartappAdapter.initializeSdkIfNeeded(context, appId);
+            StartappWarmStart.rememberAppId(context, appId);
             listener.onNetworkInitializationFinished(StartappConfig.class, ADAPTER_INITIALIZATION_SUCCESS);
         } else {
+            StartappFlightRecorder.record(null, StartappFlightRecorder.Event.INIT_FAILED, ADAPTER_CONFIGURATION_ERROR.getIntCode());
+
             listener.onNetworkInitializationFinished(StartappConfig.class, ADAPTER_CONFIGURATION_ERROR);
         }
     }
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import androidx.annotation.Nullable;
+
+public final class StartappErrors {
+    private StartappErrors() {
+    }
+
+    /**
+     * @return true if the error message of a failed StartApp load means there was no ad to serve
+     */
+    public static boolean isNoFill(@Nullable String message) {
+        return message != null && (message.contains("204") || message.contains("Empty Response"));
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the last {@link #CAPACITY} lifecycle events of the adapter in a lock-free ring buffer,
+ * each packed into a single long: | elapsedRealtime ms (40) | format (4) | event (6) | error code (14) |.
+ * Recording neither allocates nor blocks. Dumps are decoded with {@code StartappFlightRecorderDecoder}
+ * of the unit test sources.
+ */
+@Keep
+public final class StartappFlightRecorder {
+    public static final int CAPACITY = 256;
+
+    static final int MAGIC = 0x53414652;
+    static final int VERSION = 1;
+
+    static final int TIME_SHIFT = 24;
+    static final int FORMAT_SHIFT = 20;
+    static final int EVENT_SHIFT = 14;
+    static final int FORMAT_MASK = 0xF;
+    static final int EVENT_MASK = 0x3F;
+    static final int ERROR_CODE_MASK = 0x3FFF;
+
+    private static final int INDEX_MASK = CAPACITY - 1;
+
+    @Keep
+    public enum Event {
+        INIT_STARTED,
+        INIT_FAILED,
+        LOAD_ATTEMPTED,
+        LOAD_SUCCESS,
+        LOAD_FAILED,
+        SHOW_ATTEMPTED,
+        SHOW_SUCCESS,
+        SHOW_FAILED,
+        CLICKED,
+        DID_DISAPPEAR,
+        SHOULD_REWARD,
+        WILL_LEAVE_APPLICATION,
+        OTHER
+    }
+
+    @Keep
+    public interface DumpListener {
+        /**
+         * Called on a background thread after a SHOW_FAILED event.
+         */
+        void onDump(@NonNull byte[] dump);
+    }
+
+    private static final AtomicLong cursor = new AtomicLong();
+    private static final AtomicLongArray slots = new AtomicLongArray(CAPACITY);
+    private static final AtomicBoolean isDumpPending = new AtomicBoolean();
+
+    @Nullable
+    private static volatile DumpListener dumpListener;
+
+    private static final Executor executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "StartappFlightRecorder");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private static final Runnable dumpTask = new Runnable() {
+        @Override
+        public void run() {
+            isDumpPending.set(false);
+
+            final DumpListener listener = dumpListener;
+            if (listener != null) {
+                listener.onDump(dump());
+            }
+        }
+    };
+
+    private StartappFlightRecorder() {
+    }
+
+    /**
+     * Receives a dump of the buffer every time an ad fails to show.
+     */
+    public static void setDumpListener(@Nullable DumpListener listener) {
+        dumpListener = listener;
+    }
+
+    public static void record(@Nullable StartappLatency.Format format, @NonNull Event event, int errorCode) {
+        final long packed = (SystemClock.elapsedRealtime() << TIME_SHIFT)
+                | ((long) (format != null ? format.ordinal() + 1 : 0) << FORMAT_SHIFT)
+                | ((long) event.ordinal() << EVENT_SHIFT)
+                | (errorCode & ERROR_CODE_MASK);
+
+        slots.set((int) (cursor.getAndIncrement() & INDEX_MASK), packed);
+
+        if (event == Event.SHOW_FAILED && dumpListener != null && isDumpPending.compareAndSet(false, true)) {
+            executor.execute(dumpTask);
+        }
+    }
+
+    /**
+     * @return recorded events, oldest first: magic, version and count as ints followed by one long per event
+     */
+    @NonNull
+    public static byte[] dump() {
+        final long end = cursor.get();
+        final int count = (int) Math.min(end, CAPACITY);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(12 + 8 * count);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+
+        for (long i = end - count; i < end; ++i) {
+            buffer.putLong(slots.get((int) (i & INDEX_MASK)));
+        }
+
+        return buffer.array();
+    }
+}
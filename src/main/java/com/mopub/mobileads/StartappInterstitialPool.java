@@ -0,0 +1,447 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.startapp.sdk.adsbase.Ad;
+import com.startapp.sdk.adsbase.StartAppAd;
+import com.startapp.sdk.adsbase.adlisteners.AdEventListener;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of loaded {@link StartAppAd} instances keyed by (AdMode, adTag, minCPM).
+ * Keys are evicted in least recently used order, entries expire after
+ * {@link StartappSettings#getInterstitialPoolTtlMillis()}.
+ * Also holds the rewarded videos prefetched while another one is playing
+ * and coalesces concurrent loads of the same key, see {@link #loadShared}.
+ */
+final class StartappInterstitialPool {
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    private static final LinkedHashMap<Key, Slot> slots = new LinkedHashMap<Key, Slot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Slot> eldest) {
+            return size() > StartappSettings.getInterstitialPoolMaxKeys();
+        }
+    };
+
+    private StartappInterstitialPool() {
+    }
+
+    static final class Key {
+        @Nullable
+        final StartAppAd.AdMode adMode;
+
+        @Nullable
+        final String adTag;
+
+        @Nullable
+        final Double minCPM;
+
+        Key(@Nullable StartAppAd.AdMode adMode, @Nullable String adTag, @Nullable Double minCPM) {
+            this.adMode = adMode;
+            this.adTag = adTag;
+            this.minCPM = minCPM;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return adMode == key.adMode
+                    && (adTag != null ? adTag.equals(key.adTag) : key.adTag == null)
+                    && (minCPM != null ? minCPM.equals(key.minCPM) : key.minCPM == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = adMode != null ? adMode.hashCode() : 0;
+            result = 31 * result + (adTag != null ? adTag.hashCode() : 0);
+            result = 31 * result + (minCPM != null ? minCPM.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        @NonNull
+        final StartAppAd ad;
+
+        final long loadedAt;
+
+        Entry(@NonNull StartAppAd ad, long loadedAt) {
+            this.ad = ad;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Slot {
+        final ArrayDeque<Entry> ready = new ArrayDeque<>();
+        int inFlight;
+    }
+
+    @Nullable
+    static StartAppAd take(@NonNull Key key) {
+        synchronized (slots) {
+            final Slot slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+
+            evictExpired(slot);
+
+            Entry entry;
+            while ((entry = slot.ready.pollFirst()) != null) {
+                if (entry.ad.isReady()) {
+                    return entry.ad;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    static void refill(@NonNull Context context, @NonNull Key key, @NonNull StartappAdapter.Extras extras) {
+        fill(context, key, extras, StartappSettings.getInterstitialPoolSize(), false);
+    }
+
+    /**
+     * Same as {@link #refill} but up to {@code depth} ads and limited by
+     * {@link StartappSettings#getRewardedPrefetchBudget()}.
+     */
+    static void prefetch(@NonNull Context context, @NonNull Key key, @NonNull StartappAdapter.Extras extras, int depth) {
+        fill(context, key, extras, depth, true);
+    }
+
+    private static void fill(
+            @NonNull Context context,
+            @NonNull final Key key,
+            @NonNull final StartappAdapter.Extras extras,
+            int target,
+            boolean budgeted
+    ) {
+        if (!StartappLoadScheduler.allowsPrefetch(context, key.adMode)) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        final int missing;
+
+        synchronized (slots) {
+            Slot slot = slots.get(key);
+            if (slot == null) {
+                slot = new Slot();
+                slots.put(key, slot);
+            }
+
+            evictExpired(slot);
+
+            int count = target - slot.ready.size() - slot.inFlight;
+            if (budgeted) {
+                count = Math.min(count, acquireBudget(count));
+            }
+
+            missing = count;
+            if (missing <= 0) {
+                return;
+            }
+
+            slot.inFlight += missing;
+        }
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < missing; ++i) {
+                    load(appContext, key, extras);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the pooled interstitials. The prefetched rewarded videos and their budget are kept,
+     * they are not part of the interstitial pool.
+     */
+    static void clearInterstitials() {
+        synchronized (slots) {
+            final Iterator<Key> iterator = slots.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().adMode != StartAppAd.AdMode.REWARDED_VIDEO) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static final ArrayDeque<Long> budgetLoads = new ArrayDeque<>();
+
+    private static int acquireBudget(int requested) {
+        final long now = SystemClock.elapsedRealtime();
+        final long windowStart = now - StartappSettings.getRewardedPrefetchBudgetWindowMillis();
+
+        Long oldest;
+        while ((oldest = budgetLoads.peekFirst()) != null && oldest < windowStart) {
+            budgetLoads.pollFirst();
+        }
+
+        final int granted = Math.max(0, Math.min(requested, StartappSettings.getRewardedPrefetchBudget() - budgetLoads.size()));
+        for (int i = 0; i < granted; ++i) {
+            budgetLoads.addLast(now);
+        }
+
+        return granted;
+    }
+
+    private static void load(@NonNull Context context, @NonNull final Key key, @NonNull StartappAdapter.Extras extras) {
+        final StartAppAd startAppAd = new StartAppAd(context);
+        final AdEventListener listener = new AdEventListener() {
+            @Override
+            public void onReceiveAd(@NonNull Ad ad) {
+                synchronized (slots) {
+                    final Slot slot = slots.get(key);
+                    if (slot != null) {
+                        slot.inFlight = Math.max(0, slot.inFlight - 1);
+                        slot.ready.addLast(new Entry(startAppAd, SystemClock.elapsedRealtime()));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailedToReceiveAd(@NonNull Ad ad) {
+                synchronized (slots) {
+                    final Slot slot = slots.get(key);
+                    if (slot != null) {
+                        slot.inFlight = Math.max(0, slot.inFlight - 1);
+                    }
+                }
+            }
+        };
+
+        if (key.adMode == null) {
+            startAppAd.loadAd(extras.getAdPreferences(), listener);
+        } else {
+            startAppAd.loadAd(key.adMode, extras.getAdPreferences(), listener);
+        }
+    }
+
+    interface SharedLoadListener {
+        void onLoaded(@NonNull StartAppAd startAppAd, @NonNull Ad ad);
+
+        void onFailed(@NonNull Ad ad);
+
+        /**
+         * The shared load got no answer from the SDK within
+         * {@link StartappSettings#getLoadCoalescingTimeoutMillis()} or another waiter's load deadline.
+         */
+        void onTimedOut();
+    }
+
+    /**
+     * A shared load and its waiters. As a {@link Runnable} it times the load out.
+     */
+    private static final class Flight implements Runnable {
+        @NonNull
+        final Key key;
+
+        final ArrayDeque<SharedLoadListener> waiters = new ArrayDeque<>();
+
+        Flight(@NonNull Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            for (SharedLoadListener waiter : finish(this)) {
+                waiter.onTimedOut();
+            }
+        }
+    }
+
+    private static final Map<Key, Flight> flights = new HashMap<>();
+
+    /**
+     * Joins the load of {@code key} already in flight or starts one. The loaded ad goes to the first waiter,
+     * the remaining waiters start the next load, a failure is reported to every waiter.
+     * An ad loaded after every waiter left is kept in the pool.
+     */
+    static void loadShared(
+            @NonNull Context context,
+            @NonNull final Key key,
+            @NonNull final StartappAdapter.Extras extras,
+            @NonNull SharedLoadListener listener
+    ) {
+        final Flight flight;
+        synchronized (flights) {
+            final Flight current = flights.get(key);
+            if (current != null && !current.waiters.isEmpty()) {
+                current.waiters.addLast(listener);
+                return;
+            }
+
+            flight = new Flight(key);
+            flight.waiters.addLast(listener);
+            flights.put(key, flight);
+        }
+
+        handler.postDelayed(flight, StartappSettings.getLoadCoalescingTimeoutMillis());
+
+        final Context appContext = context.getApplicationContext();
+        final StartAppAd startAppAd = new StartAppAd(appContext);
+        final AdEventListener loadListener = new AdEventListener() {
+            @Override
+            public void onReceiveAd(@NonNull Ad ad) {
+                final ArrayDeque<SharedLoadListener> waiters = finish(flight);
+
+                final SharedLoadListener first = waiters.pollFirst();
+                if (first == null) {
+                    offer(key, startAppAd);
+                    return;
+                }
+
+                first.onLoaded(startAppAd, ad);
+
+                SharedLoadListener next;
+                while ((next = waiters.pollFirst()) != null) {
+                    loadShared(appContext, key, extras, next);
+                }
+            }
+
+            @Override
+            public void onFailedToReceiveAd(@NonNull Ad ad) {
+                for (SharedLoadListener waiter : finish(flight)) {
+                    waiter.onFailed(ad);
+                }
+            }
+        };
+
+        if (key.adMode == null) {
+            startAppAd.loadAd(extras.getAdPreferences(), loadListener);
+        } else {
+            startAppAd.loadAd(key.adMode, extras.getAdPreferences(), loadListener);
+        }
+    }
+
+    /**
+     * Removes a waiter that is no longer interested, the shared load itself keeps running for the others.
+     * Once the last waiter left, the next load of {@code key} starts a new request.
+     */
+    static void cancelShared(@NonNull Key key, @NonNull SharedLoadListener listener) {
+        final Flight flight;
+        synchronized (flights) {
+            flight = flights.get(key);
+            if (flight == null || !flight.waiters.remove(listener) || !flight.waiters.isEmpty()) {
+                return;
+            }
+
+            flights.remove(key);
+        }
+
+        handler.removeCallbacks(flight);
+    }
+
+    /**
+     * Ends the shared load {@code listener} waits on once its load deadline has passed,
+     * the other waiters time out with it and the next load of {@code key} starts a new request.
+     */
+    static void timeOutShared(@NonNull Key key, @NonNull SharedLoadListener listener) {
+        final Flight flight;
+        synchronized (flights) {
+            flight = flights.get(key);
+            if (flight == null || !flight.waiters.contains(listener)) {
+                return;
+            }
+        }
+
+        for (SharedLoadListener waiter : finish(flight)) {
+            if (waiter != listener) {
+                waiter.onTimedOut();
+            }
+        }
+    }
+
+    /**
+     * Ends {@code flight} once, later calls return no waiter.
+     *
+     * @return waiters of {@code flight}, in the order they joined
+     */
+    @NonNull
+    private static ArrayDeque<SharedLoadListener> finish(@NonNull Flight flight) {
+        handler.removeCallbacks(flight);
+
+        synchronized (flights) {
+            if (flights.get(flight.key) == flight) {
+                flights.remove(flight.key);
+            }
+
+            final ArrayDeque<SharedLoadListener> waiters = new ArrayDeque<>(flight.waiters);
+            flight.waiters.clear();
+            return waiters;
+        }
+    }
+
+    /**
+     * Keeps a loaded ad nobody waits for anymore for the next {@link #take} of {@code key}.
+     */
+    private static void offer(@NonNull Key key, @NonNull StartAppAd ad) {
+        final int capacity = key.adMode == StartAppAd.AdMode.REWARDED_VIDEO
+                ? StartappSettings.getRewardedPrefetchDepth()
+                : StartappSettings.getInterstitialPoolSize();
+
+        synchronized (slots) {
+            Slot slot = slots.get(key);
+            if (slot == null) {
+                slot = new Slot();
+                slots.put(key, slot);
+            }
+
+            evictExpired(slot);
+
+            if (slot.ready.size() < capacity) {
+                slot.ready.addLast(new Entry(ad, SystemClock.elapsedRealtime()));
+            }
+        }
+    }
+
+    private static void evictExpired(@NonNull Slot slot) {
+        final long deadline = SystemClock.elapsedRealtime() - StartappSettings.getInterstitialPoolTtlMillis();
+        final Iterator<Entry> iterator = slot.ready.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().loadedAt < deadline) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per format and adTag latency histograms of the adapter's load and show paths.
+ * Recording is lock-free and allocation-free once an adTag has been seen, memory is bounded by
+ * {@link #MAX_AD_TAGS} adTags per format, further adTags are accounted under {@link #OTHER_AD_TAGS}.
+ */
+@Keep
+public final class StartappLatency {
+    public static final int MAX_AD_TAGS = 32;
+    public static final String OTHER_AD_TAGS = "*";
+
+    private static final String NO_AD_TAG = "";
+
+    @Keep
+    public enum Format {
+        INTERSTITIAL,
+        REWARDED,
+        BANNER,
+        NATIVE
+    }
+
+    @Keep
+    public enum Metric {
+        /** load attempt until the ad was loaded */
+        LOAD_SUCCESS,
+        /** load attempt until the load failed */
+        LOAD_FAILURE,
+        /** show() until the ad was displayed */
+        SHOW,
+        /** banner attached to MoPub's view until the impression was reported, the other formats have no separate impression signal */
+        IMPRESSION
+    }
+
+    private static final Format[] FORMATS = Format.values();
+    private static final Metric[] METRICS = Metric.values();
+
+    @SuppressWarnings("unchecked")
+    private static final ConcurrentHashMap<String, Histogram[]>[] histograms = new ConcurrentHashMap[FORMATS.length];
+
+    static {
+        for (int i = 0; i < FORMATS.length; ++i) {
+            histograms[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    private StartappLatency() {
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, taken from {@link System#nanoTime()}; zero means not started.
+     */
+    public static void record(@NonNull Format format, @Nullable String adTag, @NonNull Metric metric, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+
+        final long micros = (System.nanoTime() - startNanos) / 1000;
+        getHistograms(format, adTag)[metric.ordinal()].record(micros);
+    }
+
+    /**
+     * @return histograms of every (format, adTag, metric) with at least one recorded value
+     */
+    @NonNull
+    public static List<Snapshot> snapshot() {
+        final List<Snapshot> result = new ArrayList<>();
+
+        for (Format format : FORMATS) {
+            for (Map.Entry<String, Histogram[]> entry : histograms[format.ordinal()].entrySet()) {
+                for (Metric metric : METRICS) {
+                    final Snapshot snapshot = entry.getValue()[metric.ordinal()].snapshot(format, entry.getKey(), metric);
+                    if (snapshot.getCount() > 0) {
+                        result.add(snapshot);
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    public static void reset() {
+        for (Map<String, Histogram[]> map : histograms) {
+            map.clear();
+        }
+    }
+
+    @NonNull
+    private static Histogram[] getHistograms(@NonNull Format format, @Nullable String adTag) {
+        final ConcurrentHashMap<String, Histogram[]> map = histograms[format.ordinal()];
+        final String key = adTag != null ? adTag : NO_AD_TAG;
+
+        Histogram[] result = map.get(key);
+        if (result == null) {
+            final String boundedKey = map.size() < MAX_AD_TAGS ? key : OTHER_AD_TAGS;
+
+            result = map.get(boundedKey);
+            if (result == null) {
+                final Histogram[] created = new Histogram[METRICS.length];
+                for (int i = 0; i < created.length; ++i) {
+                    created[i] = new Histogram();
+                }
+
+                final Histogram[] existing = map.putIfAbsent(boundedKey, created);
+                result = existing != null ? existing : created;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Log-linear buckets: four sub-buckets per power of two of microseconds, about 25% precision up to ~67 seconds.
+     */
+    static final class Histogram {
+        static final int BUCKET_COUNT = 104;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+        void record(long micros) {
+            buckets.incrementAndGet(bucketIndex(micros));
+        }
+
+        static int bucketIndex(long micros) {
+            if (micros < 4) {
+                return (int) Math.max(0, micros);
+            }
+
+            final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            final int subBucket = (int) ((micros >>> (exponent - 2)) & 3);
+            return Math.min(BUCKET_COUNT - 1, (exponent - 1) * 4 + subBucket);
+        }
+
+        static long bucketLowerBound(int index) {
+            if (index < 4) {
+                return index;
+            }
+
+            final int exponent = index / 4 + 1;
+            final int subBucket = index % 4;
+            return (long) (4 + subBucket) << (exponent - 2);
+        }
+
+        @NonNull
+        Snapshot snapshot(@NonNull Format format, @NonNull String adTag, @NonNull Metric metric) {
+            final long[] counts = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                counts[i] = buckets.get(i);
+            }
+
+            return new Snapshot(format, adTag, metric, counts);
+        }
+    }
+
+    @Keep
+    public static final class Snapshot {
+        @NonNull
+        private final Format format;
+
+        @NonNull
+        private final String adTag;
+
+        @NonNull
+        private final Metric metric;
+
+        @NonNull
+        private final long[] counts;
+
+        private final long count;
+
+        Snapshot(@NonNull Format format, @NonNull String adTag, @NonNull Metric metric, @NonNull long[] counts) {
+            this.format = format;
+            this.adTag = adTag;
+            this.metric = metric;
+            this.counts = counts;
+
+            long total = 0;
+            for (long value : counts) {
+                total += value;
+            }
+
+            count = total;
+        }
+
+        @NonNull
+        public Format getFormat() {
+            return format;
+        }
+
+        /**
+         * @return adTag of the placement, empty for placements without one
+         */
+        @NonNull
+        public String getAdTag() {
+            return adTag;
+        }
+
+        @NonNull
+        public Metric getMetric() {
+            return metric;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @param percentile value between 0 and 100
+         * @return upper bound of the bucket containing the given percentile, in milliseconds
+         */
+        public double getPercentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return (Histogram.bucketLowerBound(i + 1) - 1) / 1000.0;
+                }
+            }
+
+            return Histogram.bucketLowerBound(counts.length) / 1000.0;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return format + "/" + adTag + "/" + metric
+                    + " count=" + count
+                    + " p50=" + getPercentileMillis(50) + "ms"
+                    + " p99=" + getPercentileMillis(99) + "ms";
+        }
+    }
+}
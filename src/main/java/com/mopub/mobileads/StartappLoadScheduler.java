@@ -0,0 +1,217 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.startapp.sdk.adsbase.StartAppAd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides from the connectivity and the battery whether a load should go to the network,
+ * enabled with {@link StartappSettings#setDeviceAwareLoadingEnabled(boolean)}.
+ * Loads fail right away when offline, prefetches that may load a video are skipped on a metered network and
+ * banner refreshes are spaced by {@link StartappSettings#getLowBatteryBannerIntervalMillis()} on low battery.
+ * The device state comes from a {@link Provider} that tests can replace.
+ */
+@Keep
+public final class StartappLoadScheduler {
+    public static final int LOW_BATTERY_PERCENT = 15;
+
+    private static final int MAX_BANNER_KEYS = 16;
+
+    @Keep
+    public enum Connectivity {
+        NONE,
+        METERED,
+        UNMETERED,
+        /** state not readable, loads are let through */
+        UNKNOWN
+    }
+
+    @Keep
+    public interface Provider {
+        @NonNull
+        Connectivity getConnectivity(@NonNull Context context);
+
+        /**
+         * @return battery level between 0 and 100, negative if unknown
+         */
+        int getBatteryPercent(@NonNull Context context);
+
+        boolean isCharging(@NonNull Context context);
+    }
+
+    @Keep
+    public static class SystemProvider implements Provider {
+        @NonNull
+        @Override
+        @SuppressWarnings("deprecation")
+        public Connectivity getConnectivity(@NonNull Context context) {
+            try {
+                final ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                if (manager == null) {
+                    return Connectivity.UNKNOWN;
+                }
+
+                final NetworkInfo info = manager.getActiveNetworkInfo();
+                if (info == null || !info.isConnected()) {
+                    return Connectivity.NONE;
+                }
+
+                final boolean isMetered = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                        ? manager.isActiveNetworkMetered()
+                        : info.getType() != ConnectivityManager.TYPE_WIFI;
+
+                return isMetered ? Connectivity.METERED : Connectivity.UNMETERED;
+            } catch (RuntimeException ex) {
+                // no ACCESS_NETWORK_STATE permission
+                return Connectivity.UNKNOWN;
+            }
+        }
+
+        @Override
+        public int getBatteryPercent(@NonNull Context context) {
+            final Intent battery = getBatteryIntent(context);
+            if (battery == null) {
+                return -1;
+            }
+
+            final int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            final int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            return level >= 0 && scale > 0 ? level * 100 / scale : -1;
+        }
+
+        @Override
+        public boolean isCharging(@NonNull Context context) {
+            final Intent battery = getBatteryIntent(context);
+            return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        }
+
+        @Nullable
+        private static Intent getBatteryIntent(@NonNull Context context) {
+            try {
+                // sticky broadcast, no receiver is registered
+                return context.getApplicationContext().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            } catch (RuntimeException ex) {
+                return null;
+            }
+        }
+    }
+
+    @NonNull
+    private static volatile Provider provider = new SystemProvider();
+
+    private static final Map<Object, Long> bannerLoads = new LinkedHashMap<Object, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Long> eldest) {
+            return size() > MAX_BANNER_KEYS;
+        }
+    };
+
+    private StartappLoadScheduler() {
+    }
+
+    /**
+     * @param newProvider null restores the {@link SystemProvider}
+     */
+    public static void setProvider(@Nullable Provider newProvider) {
+        provider = newProvider != null ? newProvider : new SystemProvider();
+    }
+
+    /**
+     * @return true if a load would only wait for the SDK timeout and should fail right away
+     */
+    public static boolean isOffline(@NonNull Context context) {
+        return StartappSettings.isDeviceAwareLoadingEnabled()
+                && provider.getConnectivity(context) == Connectivity.NONE;
+    }
+
+    /**
+     * A prefetch skipped here is not retried when the network changes, the next load or show
+     * of the placement fills the pool again.
+     *
+     * @param adMode null and {@link StartAppAd.AdMode#AUTOMATIC} let the SDK pick a video
+     * @return false while offline, and for ads that may be videos while the network is metered
+     */
+    public static boolean allowsPrefetch(@NonNull Context context, @Nullable StartAppAd.AdMode adMode) {
+        if (!StartappSettings.isDeviceAwareLoadingEnabled()) {
+            return true;
+        }
+
+        final Connectivity connectivity = provider.getConnectivity(context);
+        if (connectivity == Connectivity.NONE) {
+            return false;
+        }
+
+        final boolean isMaybeVideo = adMode == null
+                || adMode == StartAppAd.AdMode.AUTOMATIC
+                || adMode == StartAppAd.AdMode.VIDEO
+                || adMode == StartAppAd.AdMode.REWARDED_VIDEO;
+        return !isMaybeVideo || connectivity != Connectivity.METERED;
+    }
+
+    /**
+     * Accounts a banner load of the placement {@code key}.
+     *
+     * @return false if the battery is low and the placement loaded a banner less than
+     * {@link StartappSettings#getLowBatteryBannerIntervalMillis()} ago
+     */
+    public static boolean allowsBannerLoad(@NonNull Context context, @NonNull Object key) {
+        if (!StartappSettings.isDeviceAwareLoadingEnabled()) {
+            return true;
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+
+        synchronized (bannerLoads) {
+            final Long last = bannerLoads.get(key);
+            if (last != null && now - last < StartappSettings.getLowBatteryBannerIntervalMillis() && isBatteryLow(context)) {
+                return false;
+            }
+
+            bannerLoads.put(key, now);
+            return true;
+        }
+    }
+
+    public static boolean isBatteryLow(@NonNull Context context) {
+        final Provider current = provider;
+
+        final int percent = current.getBatteryPercent(context);
+        return percent >= 0 && percent <= LOW_BATTERY_PERCENT && !current.isCharging(context);
+    }
+
+    static void reset() {
+        synchronized (bannerLoads) {
+            bannerLoads.clear();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.util.Log;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.mobileads.startapp.BuildConfig;
+
+import static com.mopub.mobileads.StartappAdapter.AD_NETWORK_ID;
+
+/**
+ * Logging of the adapter. Every call is dropped before any message is built or any argument is boxed
+ * when its level is below {@link StartappSettings#getLogLevel()}. Verbose logging is removed at build time
+ * when the library is built with {@code -PstartappVerboseLogging=false}.
+ * Lifecycle events are also kept by the {@link StartappFlightRecorder} whatever the level.
+ */
+@Keep
+public final class StartappLog {
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int OFF = Integer.MAX_VALUE;
+
+    private StartappLog() {
+    }
+
+    public static boolean isLoggable(int level) {
+        return level >= StartappSettings.getLogLevel();
+    }
+
+    /**
+     * Logs {@code message} followed by {@code arg}, concatenated only if verbose logging is on.
+     */
+    public static void v(@NonNull String tag, @NonNull String message, @Nullable Object arg) {
+        if (BuildConfig.VERBOSE_LOGGING && isLoggable(VERBOSE)) {
+            Log.v(tag, message + arg);
+        }
+    }
+
+    public static void w(@NonNull String tag, @NonNull String message, @Nullable Object arg) {
+        if (isLoggable(WARN)) {
+            Log.w(tag, message + arg);
+        }
+    }
+
+    /**
+     * Logs {@code message} with the stack trace of {@code throwable}.
+     */
+    public static void w(@NonNull String tag, @NonNull String message, @NonNull Throwable throwable) {
+        if (isLoggable(WARN)) {
+            Log.w(tag, message, throwable);
+        }
+    }
+
+    public static void event(
+            @Nullable StartappLatency.Format format,
+            @NonNull String tag,
+            @NonNull MoPubLog.AdapterLogEvent event
+    ) {
+        StartappFlightRecorder.record(format, toFlightEvent(event), 0);
+
+        if (isLoggable(INFO) && isMoPubLoggable(event)) {
+            MoPubLog.log(AD_NETWORK_ID, event, tag);
+        }
+    }
+
+    public static void event(
+            @Nullable StartappLatency.Format format,
+            @NonNull String tag,
+            @NonNull MoPubLog.AdapterLogEvent event,
+            int errorCode,
+            @NonNull Object error
+    ) {
+        StartappFlightRecorder.record(format, toFlightEvent(event), errorCode);
+
+        if (isLoggable(INFO) && isMoPubLoggable(event)) {
+            MoPubLog.log(AD_NETWORK_ID, event, tag, errorCode, error);
+        }
+    }
+
+    /**
+     * MoPubLog drops events below its own level, checked here before the varargs array is built.
+     */
+    private static boolean isMoPubLoggable(@NonNull MoPubLog.AdapterLogEvent event) {
+        return event.getLogLevel().intValue() >= MoPubLog.getLogLevel().intValue();
+    }
+
+    @NonNull
+    private static StartappFlightRecorder.Event toFlightEvent(@NonNull MoPubLog.AdapterLogEvent event) {
+        switch (event) {
+            case LOAD_ATTEMPTED:
+                return StartappFlightRecorder.Event.LOAD_ATTEMPTED;
+            case LOAD_SUCCESS:
+                return StartappFlightRecorder.Event.LOAD_SUCCESS;
+            case LOAD_FAILED:
+                return StartappFlightRecorder.Event.LOAD_FAILED;
+            case SHOW_ATTEMPTED:
+                return StartappFlightRecorder.Event.SHOW_ATTEMPTED;
+            case SHOW_SUCCESS:
+                return StartappFlightRecorder.Event.SHOW_SUCCESS;
+            case SHOW_FAILED:
+                return StartappFlightRecorder.Event.SHOW_FAILED;
+            case CLICKED:
+                return StartappFlightRecorder.Event.CLICKED;
+            case DID_DISAPPEAR:
+                return StartappFlightRecorder.Event.DID_DISAPPEAR;
+            case SHOULD_REWARD:
+                return StartappFlightRecorder.Event.SHOULD_REWARD;
+            case WILL_LEAVE_APPLICATION:
+                return StartappFlightRecorder.Event.WILL_LEAVE_APPLICATION;
+        }
+        return StartappFlightRecorder.Event.OTHER;
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.os.Looper;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Main thread wall time spent in the adapter's entry points and SDK callbacks, enabled with
+ * {@link StartappSettings#setMainThreadBudgetEnabled(boolean)}. A call longer than
+ * {@link StartappSettings#getMainThreadBudgetMillis()} is counted as over budget and logged.
+ * Times are inclusive: an entry point called from another one is accounted in both.
+ */
+@Keep
+public final class StartappMainThreadBudget {
+    private static final String LOG_TAG = StartappMainThreadBudget.class.getSimpleName();
+
+    @Keep
+    public enum Point {
+        LOAD,
+        LOAD_BANNER,
+        CHOOSE_BANNER,
+        SHOW_INTERSTITIAL,
+        SHOW_REWARDED,
+        LOAD_DEADLINE,
+        ON_RECEIVE_AD,
+        ON_FAILED_TO_RECEIVE_AD,
+        AD_DISPLAYED,
+        AD_HIDDEN,
+        AD_CLICKED,
+        AD_NOT_DISPLAYED,
+        VIDEO_COMPLETED,
+        BANNER_ON_RECEIVE_AD,
+        BANNER_ON_FAILED_TO_RECEIVE_AD,
+        BANNER_ON_IMPRESSION,
+        BANNER_ON_CLICK,
+        NATIVE_LOAD,
+        NATIVE_PREPARE,
+        NATIVE_ON_RECEIVE_AD,
+        NATIVE_ON_FAILED_TO_RECEIVE_AD,
+        NATIVE_AD_DISPLAYED,
+        NATIVE_AD_HIDDEN,
+        NATIVE_AD_CLICKED,
+        NATIVE_AD_NOT_DISPLAYED
+    }
+
+    private static final Point[] POINTS = Point.values();
+
+    private static final int COUNT = 0;
+    private static final int TOTAL_NANOS = 1;
+    private static final int MAX_NANOS = 2;
+    private static final int OVER_BUDGET = 3;
+    private static final int FIELDS = 4;
+
+    private static final AtomicLongArray stats = new AtomicLongArray(POINTS.length * FIELDS);
+
+    private StartappMainThreadBudget() {
+    }
+
+    /**
+     * @return start time to pass to {@link #end}, zero when disabled or off the main thread
+     */
+    public static long begin() {
+        if (!StartappSettings.isMainThreadBudgetEnabled() || Looper.myLooper() != Looper.getMainLooper()) {
+            return 0;
+        }
+
+        return System.nanoTime();
+    }
+
+    public static void end(@NonNull Point point, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final int base = point.ordinal() * FIELDS;
+
+        stats.incrementAndGet(base + COUNT);
+        stats.addAndGet(base + TOTAL_NANOS, elapsedNanos);
+
+        long max;
+        do {
+            max = stats.get(base + MAX_NANOS);
+        } while (elapsedNanos > max && !stats.compareAndSet(base + MAX_NANOS, max, elapsedNanos));
+
+        if (elapsedNanos > StartappSettings.getMainThreadBudgetMillis() * 1000000) {
+            stats.incrementAndGet(base + OVER_BUDGET);
+
+            if (StartappLog.isLoggable(StartappLog.WARN)) {
+                StartappLog.w(LOG_TAG, point + " exceeded the main thread budget, ms: ", elapsedNanos / 1000000.0);
+            }
+        }
+    }
+
+    /**
+     * @return totals of every point called at least once
+     */
+    @NonNull
+    public static List<Snapshot> snapshot() {
+        final List<Snapshot> result = new ArrayList<>();
+
+        for (Point point : POINTS) {
+            final int base = point.ordinal() * FIELDS;
+
+            final long count = stats.get(base + COUNT);
+            if (count > 0) {
+                result.add(new Snapshot(point,
+                        count,
+                        stats.get(base + TOTAL_NANOS),
+                        stats.get(base + MAX_NANOS),
+                        stats.get(base + OVER_BUDGET)));
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    public static void reset() {
+        for (int i = 0; i < stats.length(); ++i) {
+            stats.set(i, 0);
+        }
+    }
+
+    @Keep
+    public static final class Snapshot {
+        @NonNull
+        private final Point point;
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long overBudgetCount;
+
+        Snapshot(@NonNull Point point, long count, long totalNanos, long maxNanos, long overBudgetCount) {
+            this.point = point;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.overBudgetCount = overBudgetCount;
+        }
+
+        @NonNull
+        public Point getPoint() {
+            return point;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos / 1000000.0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1000000.0;
+        }
+
+        /**
+         * @return number of calls longer than the main thread budget
+         */
+        public long getOverBudgetCount() {
+            return overBudgetCount;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return point
+                    + " count=" + count
+                    + " total=" + getTotalMillis() + "ms"
+                    + " max=" + getMaxMillis() + "ms"
+                    + " overBudget=" + overBudgetCount;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.startapp.sdk.adsbase.StartAppAd;
+import com.startapp.sdk.adsbase.StartAppSDK;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the StartApp SDK initialization on a background thread, as a state machine
+ * {@link State#UNINITIALIZED} -> {@link State#INITIALIZING} -> {@link State#READY} or {@link State#FAILED}.
+ * Work submitted with {@link #whenReady(Runnable)} while it is initializing is queued and replayed on the main thread
+ * once the attempt finishes. A failed initialization is attempted again by the next {@link #start}.
+ */
+final class StartappSdkInitializer {
+    private static final String LOG_TAG = StartappSdkInitializer.class.getSimpleName();
+
+    private static final String[] STEPS = {
+            "disableSplash",
+            "enableConsent",
+            "addWrapper",
+            "init",
+    };
+
+    enum State {
+        UNINITIALIZED,
+        INITIALIZING,
+        READY,
+        FAILED
+    }
+
+    interface Sdk {
+        void initialize(@NonNull Context appContext, @NonNull String appId);
+    }
+
+    private static final Sdk STARTAPP_SDK = new Sdk() {
+        @Override
+        public void initialize(@NonNull Context appContext, @NonNull String appId) {
+            long time = System.nanoTime();
+            StartAppAd.disableSplash();
+            time = step(0, time);
+
+            StartAppAd.enableConsent(appContext, false);
+            time = step(1, time);
+
+            StartAppSDK.addWrapper(appContext, "MoPub", BuildConfig.VERSION_NAME);
+            time = step(2, time);
+
+            StartAppSDK.init(appContext, appId, false);
+            step(3, time);
+        }
+    };
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    private static final Executor MAIN_THREAD = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            handler.post(runnable);
+        }
+    };
+
+    private static final Executor executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(runnable, "StartappSdkInit");
+        }
+    });
+
+    private static final long[] stepNanos = new long[STEPS.length];
+
+    private static final Object lock = new Object();
+
+    // guarded by lock
+    @NonNull
+    private static State state = State.UNINITIALIZED;
+
+    private static final List<Runnable> pending = new ArrayList<>();
+
+    @Nullable
+    private static FutureTask<Boolean> attempt;
+
+    // identifies the latest attempt, an attempt forgotten by resetForTesting must not change the state
+    private static int generation;
+
+    @NonNull
+    private static Sdk sdk = STARTAPP_SDK;
+
+    @NonNull
+    private static Executor replayExecutor = MAIN_THREAD;
+
+    private StartappSdkInitializer() {
+    }
+
+    /**
+     * Starts an initialization attempt unless one is running or has succeeded.
+     *
+     * @return true if this call started an attempt
+     */
+    static boolean start(@NonNull Context context, @NonNull final String appId) {
+        final Context appContext = context.getApplicationContext();
+        final FutureTask<Boolean> task;
+
+        synchronized (lock) {
+            if (state == State.INITIALIZING || state == State.READY) {
+                return false;
+            }
+
+            state = State.INITIALIZING;
+
+            final int attemptGeneration = ++generation;
+            final Sdk target = sdk;
+            task = new FutureTask<>(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    boolean isReady = false;
+
+                    try {
+                        target.initialize(appContext, appId);
+                        isReady = true;
+                    } catch (RuntimeException ex) {
+                        StartappLog.w(LOG_TAG, "SDK initialization failed", ex);
+                    } finally {
+                        finish(attemptGeneration, isReady);
+                    }
+
+                    return isReady;
+                }
+            });
+
+            attempt = task;
+        }
+
+        executor.execute(task);
+        return true;
+    }
+
+    private static void finish(int attemptGeneration, boolean isReady) {
+        final List<Runnable> replay;
+        final Executor target;
+
+        synchronized (lock) {
+            if (attemptGeneration != generation) {
+                return;
+            }
+
+            state = isReady ? State.READY : State.FAILED;
+
+            replay = new ArrayList<>(pending);
+            pending.clear();
+            target = replayExecutor;
+        }
+
+        if (!isReady) {
+            StartappFlightRecorder.record(null, StartappFlightRecorder.Event.INIT_FAILED, 0);
+        }
+
+        // a failed attempt still releases its waiters, their loads then report the SDK's own error
+        for (Runnable runnable : replay) {
+            target.execute(runnable);
+        }
+    }
+
+    @NonNull
+    static State getState() {
+        synchronized (lock) {
+            return state;
+        }
+    }
+
+    /**
+     * @return true while an attempt is running, {@link #whenReady} then queues its work
+     */
+    static boolean isPending() {
+        return getState() == State.INITIALIZING;
+    }
+
+    /**
+     * Runs {@code runnable} right away unless an attempt is running, otherwise queues it until the attempt finishes.
+     */
+    static void whenReady(@NonNull Runnable runnable) {
+        synchronized (lock) {
+            if (state == State.INITIALIZING) {
+                pending.add(runnable);
+                return;
+            }
+        }
+
+        runnable.run();
+    }
+
+    /**
+     * @return future of the latest attempt, true once the SDK is ready, null if none was started
+     */
+    @Nullable
+    static Future<Boolean> getReadiness() {
+        synchronized (lock) {
+            return attempt;
+        }
+    }
+
+    @NonNull
+    static Map<String, Long> getTimingsNanos() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+
+        synchronized (stepNanos) {
+            for (int i = 0; i < STEPS.length; ++i) {
+                result.put(STEPS[i], stepNanos[i]);
+            }
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Replaces the SDK and the main thread for tests, and forgets the state of previous attempts.
+     */
+    static void resetForTesting(@Nullable Sdk testSdk, @Nullable Executor testReplayExecutor) {
+        synchronized (lock) {
+            sdk = testSdk != null ? testSdk : STARTAPP_SDK;
+            replayExecutor = testReplayExecutor != null ? testReplayExecutor : MAIN_THREAD;
+            state = State.UNINITIALIZED;
+            attempt = null;
+            ++generation;
+            pending.clear();
+        }
+    }
+
+    private static long step(int index, long startNanos) {
+        final long now = System.nanoTime();
+
+        synchronized (stepNanos) {
+            stepNanos[index] = now - startNanos;
+        }
+
+        return now;
+    }
+}
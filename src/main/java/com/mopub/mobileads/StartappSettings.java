@@ -0,0 +1,448 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide tuning of the adapter. Call before the first ad request, e.g. from Application.onCreate().
+ */
+@Keep
+public final class StartappSettings {
+    private StartappSettings() {
+    }
+
+    // region Interstitial pool
+    private static volatile boolean interstitialPoolEnabled;
+    private static volatile int interstitialPoolSize = 1;
+    private static volatile int interstitialPoolMaxKeys = 4;
+    private static volatile long interstitialPoolTtlMillis = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Keeps already loaded interstitials per (interstitialMode, adTag, minCPM) so that a load can be served
+     * immediately, and refills the pool in the background after every take.
+     */
+    public static void setInterstitialPoolEnabled(boolean enabled) {
+        interstitialPoolEnabled = enabled;
+
+        if (!enabled) {
+            StartappInterstitialPool.clearInterstitials();
+        }
+    }
+
+    public static boolean isInterstitialPoolEnabled() {
+        return interstitialPoolEnabled;
+    }
+
+    /**
+     * Number of loaded interstitials kept per key.
+     */
+    public static void setInterstitialPoolSize(int size) {
+        interstitialPoolSize = Math.max(1, size);
+    }
+
+    public static int getInterstitialPoolSize() {
+        return interstitialPoolSize;
+    }
+
+    /**
+     * Number of distinct keys kept, least recently used keys are evicted first.
+     */
+    public static void setInterstitialPoolMaxKeys(int maxKeys) {
+        interstitialPoolMaxKeys = Math.max(1, maxKeys);
+    }
+
+    public static int getInterstitialPoolMaxKeys() {
+        return interstitialPoolMaxKeys;
+    }
+
+    /**
+     * Time after which a pooled interstitial is considered stale and dropped.
+     */
+    public static void setInterstitialPoolTtl(long duration, @NonNull TimeUnit unit) {
+        interstitialPoolTtlMillis = Math.max(0, unit.toMillis(duration));
+    }
+
+    public static long getInterstitialPoolTtlMillis() {
+        return interstitialPoolTtlMillis;
+    }
+    // endregion
+
+    // region Rewarded pipeline
+    private static volatile boolean rewardedPipelineEnabled;
+    private static volatile int rewardedPrefetchDepth = 1;
+    private static volatile int rewardedPrefetchBudget = 10;
+    private static volatile long rewardedPrefetchBudgetWindowMillis = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Starts loading the next rewarded video as soon as the current one is shown,
+     * so it is ready by the time the user closes the current one.
+     */
+    public static void setRewardedPipelineEnabled(boolean enabled) {
+        rewardedPipelineEnabled = enabled;
+    }
+
+    public static boolean isRewardedPipelineEnabled() {
+        return rewardedPipelineEnabled;
+    }
+
+    /**
+     * Number of rewarded videos kept loaded ahead per (adTag, minCPM).
+     */
+    public static void setRewardedPrefetchDepth(int depth) {
+        rewardedPrefetchDepth = Math.max(1, depth);
+    }
+
+    public static int getRewardedPrefetchDepth() {
+        return rewardedPrefetchDepth;
+    }
+
+    /**
+     * Maximum number of prefetch loads allowed within the given window.
+     */
+    public static void setRewardedPrefetchBudget(int loads, long window, @NonNull TimeUnit unit) {
+        rewardedPrefetchBudget = Math.max(0, loads);
+        rewardedPrefetchBudgetWindowMillis = Math.max(0, unit.toMillis(window));
+    }
+
+    public static int getRewardedPrefetchBudget() {
+        return rewardedPrefetchBudget;
+    }
+
+    public static long getRewardedPrefetchBudgetWindowMillis() {
+        return rewardedPrefetchBudgetWindowMillis;
+    }
+    // endregion
+
+    // region Native inventory
+    private static volatile int nativeAdsPerRequest = 1;
+    private static volatile long nativeInventoryTtlMillis = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Number of native ads requested per network round trip. Ads not used by the current request
+     * are kept and serve the following requests with the same configuration.
+     */
+    public static void setNativeAdsPerRequest(int count) {
+        nativeAdsPerRequest = Math.max(1, count);
+    }
+
+    public static int getNativeAdsPerRequest() {
+        return nativeAdsPerRequest;
+    }
+
+    /**
+     * Time after which a kept native ad is considered stale and dropped.
+     */
+    public static void setNativeInventoryTtl(long duration, @NonNull TimeUnit unit) {
+        nativeInventoryTtlMillis = Math.max(0, unit.toMillis(duration));
+    }
+
+    public static long getNativeInventoryTtlMillis() {
+        return nativeInventoryTtlMillis;
+    }
+    // endregion
+
+    // region Native prefetch
+    private static volatile int nativePrefetchMaxAhead = 4;
+
+    /**
+     * Most native ads a {@link com.mopub.nativeads.StartappNativePrefetcher} keeps ready ahead of the viewport,
+     * however fast the feed scrolls.
+     */
+    public static void setNativePrefetchMaxAhead(int count) {
+        nativePrefetchMaxAhead = Math.max(0, count);
+    }
+
+    public static int getNativePrefetchMaxAhead() {
+        return nativePrefetchMaxAhead;
+    }
+    // endregion
+
+    // region Native images
+    private static volatile boolean nativeImagePipelineEnabled;
+    private static volatile int nativeImageCacheBytes = 4 * 1024 * 1024;
+
+    /**
+     * Fetches native images with the adapter's own loader, decoded at the requested native image size,
+     * instead of MoPub's NativeImageHelper. Bind them with {@link com.mopub.nativeads.StartappNativeImageLoader}.
+     */
+    public static void setNativeImagePipelineEnabled(boolean enabled) {
+        nativeImagePipelineEnabled = enabled;
+    }
+
+    public static boolean isNativeImagePipelineEnabled() {
+        return nativeImagePipelineEnabled;
+    }
+
+    private static volatile boolean nativeProgressiveLoadEnabled;
+
+    /**
+     * Reports image native ads as loaded as soon as their texts are known, images are fetched afterwards
+     * with the adapter's own loader at the requested native image size.
+     * <p>
+     * Requires the renderer to bind images with {@link com.mopub.nativeads.StartappNativeImageLoader#bind},
+     * MoPub's renderers download the urls again on their own. A failed image is removed from the ad,
+     * which only helps if the ad has not been rendered yet.
+     */
+    public static void setNativeProgressiveLoadEnabled(boolean enabled) {
+        nativeProgressiveLoadEnabled = enabled;
+    }
+
+    public static boolean isNativeProgressiveLoadEnabled() {
+        return nativeProgressiveLoadEnabled;
+    }
+
+    /**
+     * Upper bound of decoded bitmaps kept in memory, in bytes. Takes effect before the first image load.
+     */
+    public static void setNativeImageCacheSize(int bytes) {
+        nativeImageCacheBytes = Math.max(0, bytes);
+    }
+
+    public static int getNativeImageCacheSize() {
+        return nativeImageCacheBytes;
+    }
+    // endregion
+
+    // region Banner recycling
+    private static volatile boolean bannerRecyclingEnabled;
+
+    /**
+     * Reuses banner views across refreshes of the same placement within an Activity
+     * instead of creating new ones for every load.
+     */
+    public static void setBannerRecyclingEnabled(boolean enabled) {
+        bannerRecyclingEnabled = enabled;
+    }
+
+    public static boolean isBannerRecyclingEnabled() {
+        return bannerRecyclingEnabled;
+    }
+    // endregion
+
+    // region Banner double buffering
+    private static volatile boolean bannerDoubleBufferingEnabled;
+
+    /**
+     * Loads and lays out the next banner outside of the visible area of the window while the current one
+     * stays on screen, so the refreshed banner is swapped in already rendered.
+     */
+    public static void setBannerDoubleBufferingEnabled(boolean enabled) {
+        bannerDoubleBufferingEnabled = enabled;
+    }
+
+    public static boolean isBannerDoubleBufferingEnabled() {
+        return bannerDoubleBufferingEnabled;
+    }
+    // endregion
+
+    // region No-fill circuit breaker
+    private static volatile boolean noFillCircuitBreakerEnabled;
+    private static volatile int noFillThreshold = 5;
+    private static volatile long noFillCoolDownMillis = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Stops requesting a placement, keyed by (format, adTag, minCPM), after it returned no fill
+     * several times in a row, until a cool-down has passed.
+     */
+    public static void setNoFillCircuitBreakerEnabled(boolean enabled) {
+        noFillCircuitBreakerEnabled = enabled;
+
+        if (!enabled) {
+            StartappCircuitBreaker.reset();
+        }
+    }
+
+    public static boolean isNoFillCircuitBreakerEnabled() {
+        return noFillCircuitBreakerEnabled;
+    }
+
+    /**
+     * Number of consecutive no fills that opens the circuit.
+     */
+    public static void setNoFillThreshold(int count) {
+        noFillThreshold = Math.max(1, count);
+    }
+
+    public static int getNoFillThreshold() {
+        return noFillThreshold;
+    }
+
+    /**
+     * Time loads fail right away once the circuit is open, before a single probe load is let through.
+     */
+    public static void setNoFillCoolDown(long duration, @NonNull TimeUnit unit) {
+        noFillCoolDownMillis = Math.max(0, unit.toMillis(duration));
+    }
+
+    public static long getNoFillCoolDownMillis() {
+        return noFillCoolDownMillis;
+    }
+    // endregion
+
+    // region Load coalescing
+    private static volatile boolean loadCoalescingEnabled;
+    private static volatile long loadCoalescingTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Lets concurrent loads with the same configuration share a single network request.
+     * Native waiters are served from the ads it returns, interstitial and rewarded waiters share its failure
+     * and otherwise start the next load one after the other.
+     */
+    public static void setLoadCoalescingEnabled(boolean enabled) {
+        loadCoalescingEnabled = enabled;
+    }
+
+    public static boolean isLoadCoalescingEnabled() {
+        return loadCoalescingEnabled;
+    }
+
+    /**
+     * Time after which a shared load the SDK has not answered fails its waiters with NETWORK_TIMEOUT,
+     * the next load with the same configuration then starts a new request.
+     */
+    public static void setLoadCoalescingTimeout(long duration, @NonNull TimeUnit unit) {
+        loadCoalescingTimeoutMillis = Math.max(0, unit.toMillis(duration));
+    }
+
+    public static long getLoadCoalescingTimeoutMillis() {
+        return loadCoalescingTimeoutMillis;
+    }
+    // endregion
+
+    // region Load deadlines
+    private static volatile boolean loadDeadlinesEnabled;
+    private static final AtomicLongArray loadDeadlineMillis = new AtomicLongArray(new long[]{
+            TimeUnit.SECONDS.toMillis(5),   // INTERSTITIAL
+            TimeUnit.SECONDS.toMillis(10),  // REWARDED
+            TimeUnit.SECONDS.toMillis(3),   // BANNER
+            TimeUnit.SECONDS.toMillis(5),   // NATIVE
+    });
+
+    /**
+     * Fails a load with NETWORK_TIMEOUT once its format's deadline has passed without an answer from the SDK,
+     * instead of waiting for MoPub's own timeout. Late SDK callbacks are ignored.
+     */
+    public static void setLoadDeadlinesEnabled(boolean enabled) {
+        loadDeadlinesEnabled = enabled;
+    }
+
+    public static boolean isLoadDeadlinesEnabled() {
+        return loadDeadlinesEnabled;
+    }
+
+    public static void setLoadDeadline(@NonNull StartappLatency.Format format, long duration, @NonNull TimeUnit unit) {
+        loadDeadlineMillis.set(format.ordinal(), Math.max(0, unit.toMillis(duration)));
+    }
+
+    public static long getLoadDeadlineMillis(@NonNull StartappLatency.Format format) {
+        return loadDeadlineMillis.get(format.ordinal());
+    }
+    // endregion
+
+    // region Logging
+    private static volatile int logLevel = StartappLog.INFO;
+
+    /**
+     * Lowest level logged by the adapter, one of {@link StartappLog#VERBOSE}, {@link StartappLog#INFO}
+     * or {@link StartappLog#OFF}. MoPub lifecycle events are logged at INFO.
+     */
+    public static void setLogLevel(int level) {
+        logLevel = level;
+    }
+
+    public static int getLogLevel() {
+        return logLevel;
+    }
+    // endregion
+
+    // region Main thread budget
+    private static volatile boolean mainThreadBudgetEnabled;
+    private static volatile long mainThreadBudgetMillis = 4;
+
+    /**
+     * Measures the main thread time of the adapter's entry points and callbacks, see {@link StartappMainThreadBudget}.
+     */
+    public static void setMainThreadBudgetEnabled(boolean enabled) {
+        mainThreadBudgetEnabled = enabled;
+    }
+
+    public static boolean isMainThreadBudgetEnabled() {
+        return mainThreadBudgetEnabled;
+    }
+
+    /**
+     * Share of a frame a single adapter call may take on the main thread before it is flagged, 4 ms by default.
+     */
+    public static void setMainThreadBudget(long budget, @NonNull TimeUnit unit) {
+        mainThreadBudgetMillis = Math.max(0, unit.toMillis(budget));
+    }
+
+    public static long getMainThreadBudgetMillis() {
+        return mainThreadBudgetMillis;
+    }
+    // endregion
+
+    // region Warm start
+    private static volatile boolean warmStartEnabled;
+
+    /**
+     * Keeps the appId and the ad settings of recently loaded placements on disk for
+     * {@link StartappAdapter#warmStart(android.content.Context)} on the next launch.
+     */
+    public static void setWarmStartEnabled(boolean enabled) {
+        warmStartEnabled = enabled;
+    }
+
+    public static boolean isWarmStartEnabled() {
+        return warmStartEnabled;
+    }
+    // endregion
+
+    // region Device aware loading
+    private static volatile boolean deviceAwareLoadingEnabled;
+    private static volatile long lowBatteryBannerIntervalMillis = TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * Lets {@link StartappLoadScheduler} fail loads while offline, skip the prefetches that may load a video
+     * on metered networks and space banner refreshes on low battery. A skipped prefetch is not retried
+     * when the network changes, the next load of the placement refills the pool.
+     */
+    public static void setDeviceAwareLoadingEnabled(boolean enabled) {
+        deviceAwareLoadingEnabled = enabled;
+    }
+
+    public static boolean isDeviceAwareLoadingEnabled() {
+        return deviceAwareLoadingEnabled;
+    }
+
+    /**
+     * Shortest time between two banner loads of a placement while the battery is low.
+     */
+    public static void setLowBatteryBannerInterval(long duration, @NonNull TimeUnit unit) {
+        lowBatteryBannerIntervalMillis = Math.max(0, unit.toMillis(duration));
+    }
+
+    public static long getLowBatteryBannerIntervalMillis() {
+        return lowBatteryBannerIntervalMillis;
+    }
+    // endregion
+}
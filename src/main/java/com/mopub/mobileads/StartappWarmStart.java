@@ -0,0 +1,407 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.AtomicFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Snapshot of the last known appId and of the extras of the recently loaded placements, kept on disk so that
+ * the next launch can initialize the SDK, parse the extras and prefetch ads before MoPub delivers its configuration.
+ * Only the server keys {@link StartappAdapter.Extras} reads are kept, not the rest of MoPub's ad data.
+ * Reads and writes run on a background thread, writes replace the file atomically.
+ */
+final class StartappWarmStart {
+    private static final String FILE_NAME = "startapp_warm_start";
+
+    private static final int MAGIC = 0x53415753;
+    private static final int VERSION = 1;
+    private static final int MAX_ENTRIES = 16;
+
+    private static final Executor executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "StartappWarmStart");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private static final LinkedHashMap<Entry, Entry> entries = new LinkedHashMap<Entry, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Entry, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final AtomicBoolean isWritePending = new AtomicBoolean();
+
+    @Nullable
+    private static volatile String appId;
+
+    @Nullable
+    private static volatile Context appContext;
+
+    private StartappWarmStart() {
+    }
+
+    static final class Entry {
+        @NonNull
+        final StartappLatency.Format format;
+
+        @NonNull
+        final Map<String, String> extras;
+
+        private final int hashCode;
+
+        Entry(@NonNull StartappLatency.Format format, @NonNull Map<String, String> extras) {
+            this.format = format;
+            this.extras = extras;
+            this.hashCode = 31 * format.hashCode() + extras.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            final Entry entry = (Entry) o;
+            return hashCode == entry.hashCode && format == entry.format && extras.equals(entry.extras);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * @return id of the format in the snapshot file, unlike the ordinal it must not change with the enum
+     */
+    private static int getFormatId(@NonNull StartappLatency.Format format) {
+        switch (format) {
+            case INTERSTITIAL:
+                return 0;
+            case REWARDED:
+                return 1;
+            case BANNER:
+                return 2;
+            case NATIVE:
+                return 3;
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    @Nullable
+    private static StartappLatency.Format getFormat(int id) {
+        switch (id) {
+            case 0:
+                return StartappLatency.Format.INTERSTITIAL;
+            case 1:
+                return StartappLatency.Format.REWARDED;
+            case 2:
+                return StartappLatency.Format.BANNER;
+            case 3:
+                return StartappLatency.Format.NATIVE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads the snapshot in the background, then starts the SDK initialization and the prefetches it allows.
+     */
+    static void start(@NonNull Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        appContext = applicationContext;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                read(applicationContext);
+                prewarm(applicationContext);
+            }
+        });
+    }
+
+    static void rememberAppId(@NonNull Context context, @NonNull String id) {
+        if (!StartappSettings.isWarmStartEnabled() || id.equals(appId)) {
+            return;
+        }
+
+        appId = id;
+        scheduleWrite(context);
+    }
+
+    /**
+     * Adds the extras of a placement to the snapshot. The entry is built once per {@code compiled} extras,
+     * a placement that is already part of the snapshot does not allocate.
+     */
+    static void remember(
+            @NonNull Context context,
+            @NonNull StartappLatency.Format format,
+            @Nullable Map<String, String> extras,
+            @NonNull StartappAdapter.Extras compiled
+    ) {
+        if (!StartappSettings.isWarmStartEnabled() || extras == null || extras.isEmpty()) {
+            return;
+        }
+
+        final String id = compiled.getAppId();
+        if (!TextUtils.isEmpty(id)) {
+            appId = id;
+        }
+
+        Entry entry = compiled.getWarmStartEntry(format);
+        if (entry == null) {
+            entry = new Entry(format, pickServerKeys(extras));
+            compiled.setWarmStartEntry(entry);
+        }
+
+        synchronized (entries) {
+            if (entries.get(entry) != null) {
+                return;
+            }
+
+            entries.put(entry, entry);
+        }
+
+        scheduleWrite(context);
+    }
+
+    @NonNull
+    private static Map<String, String> pickServerKeys(@NonNull Map<String, String> extras) {
+        final Map<String, String> result = new HashMap<>();
+
+        for (String key : StartappAdapter.Extras.SERVER_KEYS) {
+            final String value = extras.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+
+        return result;
+    }
+
+    private static void scheduleWrite(@NonNull Context context) {
+        if (appContext == null) {
+            appContext = context.getApplicationContext();
+        }
+
+        if (!isWritePending.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                isWritePending.set(false);
+
+                final Context context = appContext;
+                if (context != null) {
+                    write(context);
+                }
+            }
+        });
+    }
+
+    private static void prewarm(@NonNull final Context context) {
+        final List<Entry> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries.keySet());
+        }
+
+        StartappAdapter.initializeSdkIfNeeded(context, appId);
+
+        final List<StartappAdapter.Extras> compiled = new ArrayList<>(snapshot.size());
+
+        // parsing does not need the SDK and fills the Extras cache for the first loads
+        for (Entry entry : snapshot) {
+            compiled.add(StartappAdapter.Extras.compile(
+                    null,
+                    entry.extras,
+                    entry.format == StartappLatency.Format.NATIVE));
+        }
+
+        StartappSdkInitializer.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                // a failed initialization leaves the loads to the regular requests
+                if (StartappSdkInitializer.getState() != StartappSdkInitializer.State.READY) {
+                    return;
+                }
+
+                for (int i = 0; i < snapshot.size(); ++i) {
+                    prefetch(context, snapshot.get(i).format, compiled.get(i));
+                }
+            }
+        });
+    }
+
+    private static void prefetch(
+            @NonNull Context context,
+            @NonNull StartappLatency.Format format,
+            @NonNull StartappAdapter.Extras extras
+    ) {
+        if (format == StartappLatency.Format.INTERSTITIAL && StartappSettings.isInterstitialPoolEnabled()) {
+            StartappInterstitialPool.refill(
+                    context,
+                    extras.getPoolKey(false),
+                    extras);
+        } else if (format == StartappLatency.Format.REWARDED && StartappSettings.isRewardedPipelineEnabled()) {
+            StartappInterstitialPool.prefetch(
+                    context,
+                    extras.getPoolKey(true),
+                    extras,
+                    StartappSettings.getRewardedPrefetchDepth());
+        }
+    }
+
+    @NonNull
+    private static AtomicFile getFile(@NonNull Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static void read(@NonNull Context context) {
+        DataInputStream input = null;
+
+        try {
+            final FileInputStream stream = getFile(context).openRead();
+            input = new DataInputStream(new BufferedInputStream(stream));
+
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return;
+            }
+
+            final String id = input.readUTF();
+            if (appId == null && !id.isEmpty()) {
+                appId = id;
+            }
+
+            final List<Entry> loaded = new ArrayList<>();
+
+            final int count = input.readInt();
+            for (int i = 0; i < count; ++i) {
+                final StartappLatency.Format format = getFormat(input.readInt());
+                final int size = input.readInt();
+
+                final Map<String, String> extras = new HashMap<>(size);
+                for (int j = 0; j < size; ++j) {
+                    extras.put(input.readUTF(), input.readUTF());
+                }
+
+                if (format != null) {
+                    loaded.add(new Entry(format, extras));
+                }
+            }
+
+            synchronized (entries) {
+                // placements remembered since the launch are more recent than the snapshot
+                final List<Entry> current = new ArrayList<>(entries.keySet());
+                entries.clear();
+
+                for (Entry entry : loaded) {
+                    entries.put(entry, entry);
+                }
+
+                for (Entry entry : current) {
+                    entries.put(entry, entry);
+                }
+            }
+        } catch (FileNotFoundException ex) {
+            // first launch
+        } catch (IOException | RuntimeException ex) {
+            StartappLog.w(StartappWarmStart.class.getSimpleName(), "Ignoring warm start snapshot", ex);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void write(@NonNull Context context) {
+        final List<Entry> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries.keySet());
+        }
+
+        final String id = appId;
+        final AtomicFile file = getFile(context);
+
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(id != null ? id : "");
+            output.writeInt(snapshot.size());
+
+            for (Entry entry : snapshot) {
+                output.writeInt(getFormatId(entry.format));
+                output.writeInt(entry.extras.size());
+
+                for (Map.Entry<String, String> extra : entry.extras.entrySet()) {
+                    output.writeUTF(extra.getKey() != null ? extra.getKey() : "");
+                    output.writeUTF(extra.getValue() != null ? extra.getValue() : "");
+                }
+            }
+
+            output.flush();
+            file.finishWrite(stream);
+        } catch (IOException ex) {
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+}
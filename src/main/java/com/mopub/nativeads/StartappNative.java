@@ -17,6 +17,9 @@
 package com.mopub.nativeads;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.view.View;
 
@@ -24,8 +27,14 @@ import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.mopub.common.logging.MoPubLog;
 import com.mopub.mobileads.StartappAdapter;
+import com.mopub.mobileads.StartappCircuitBreaker;
+import com.mopub.mobileads.StartappErrors;
+import com.mopub.mobileads.StartappLatency;
+import com.mopub.mobileads.StartappLoadScheduler;
+import com.mopub.mobileads.StartappLog;
+import com.mopub.mobileads.StartappMainThreadBudget;
+import com.mopub.mobileads.StartappSettings;
 import com.startapp.sdk.ads.nativead.NativeAdDetails;
 import com.startapp.sdk.ads.nativead.NativeAdDisplayListener;
 import com.startapp.sdk.ads.nativead.NativeAdInterface;
@@ -34,7 +43,9 @@ import com.startapp.sdk.ads.nativead.StartAppNativeAd;
 import com.startapp.sdk.adsbase.Ad;
 import com.startapp.sdk.adsbase.adlisteners.AdEventListener;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -45,69 +56,238 @@ import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.LOAD_FAILED;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.LOAD_SUCCESS;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.SHOW_FAILED;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.SHOW_SUCCESS;
-import static com.mopub.mobileads.StartappAdapter.AD_NETWORK_ID;
 
 @Keep
 public class StartappNative extends CustomEventNative {
     private static final String LOG_TAG = StartappNative.class.getSimpleName();
 
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
     @Override
     protected void loadNativeAd(
-            @NonNull Context context,
-            @NonNull CustomEventNativeListener listener,
+            @NonNull final Context context,
+            @NonNull final CustomEventNativeListener listener,
             @NonNull Map<String, Object> localExtras,
             @NonNull Map<String, String> serverExtras
     ) {
-        final StartappAdapter.Extras extras = new StartappAdapter.Extras(localExtras, serverExtras, true);
+        final StartappAdapter.Extras extras = StartappAdapter.Extras.compile(localExtras, serverExtras, true);
+
+        final StartappStaticNativeAd nativeAd = new StartappStaticNativeAd();
+        nativeAd.adTag = extras.getAdTag();
+        nativeAd.loadStartNanos = System.nanoTime();
 
         StartappAdapter.initializeSdkIfNeeded(context, extras.getAppId());
+        StartappAdapter.rememberForWarmStart(context, StartappLatency.Format.NATIVE, serverExtras, extras);
+        StartappAdapter.runWhenSdkReady(new Runnable() {
+            @Override
+            public void run() {
+                loadWhenReady(context, listener, extras, nativeAd);
+            }
+        });
+    }
+
+    private void loadWhenReady(
+            @NonNull final Context context,
+            @NonNull final CustomEventNativeListener listener,
+            @NonNull final StartappAdapter.Extras extras,
+            @NonNull final StartappStaticNativeAd nativeAd
+    ) {
+        final long traceNanos = StartappMainThreadBudget.begin();
+        try {
+            final NativeAdDetails details = StartappNativeInventory.poll(extras);
+            if (details != null) {
+                StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_ATTEMPTED);
+
+                nativeAd.onAdReceived(context, details, extras, listener);
+                return;
+            }
+
+            if (StartappLoadScheduler.isOffline(context)) {
+                StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_ATTEMPTED);
+                StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_FAILED,
+                        NativeErrorCode.CONNECTION_ERROR.getIntCode(),
+                        NativeErrorCode.CONNECTION_ERROR);
+
+                listener.onNativeAdFailed(NativeErrorCode.CONNECTION_ERROR);
+                return;
+            }
+
+            nativeAd.breakerKey = StartappSettings.isNoFillCircuitBreakerEnabled()
+                    ? extras.getBreakerKey(StartappLatency.Format.NATIVE)
+                    : null;
+
+            if (nativeAd.breakerKey != null && !StartappCircuitBreaker.allowRequest(nativeAd.breakerKey)) {
+                StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_ATTEMPTED);
+                StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_FAILED,
+                        NativeErrorCode.NETWORK_NO_FILL.getIntCode(),
+                        NativeErrorCode.NETWORK_NO_FILL);
+
+                listener.onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+                return;
+            }
+
+            nativeAd.startLoadDeadline(listener);
+
+            if (StartappSettings.isLoadCoalescingEnabled()) {
+                final StartappNativeInventory.Waiter waiter = new StartappNativeInventory.Waiter() {
+                    @Override
+                    public void onAdReceived(@NonNull NativeAdDetails details) {
+                        if (nativeAd.isLoadTimedOut) {
+                            StartappNativeInventory.offer(extras, Collections.singletonList(details));
+                            return;
+                        }
+
+                        nativeAd.onAdReceived(context, details, extras, listener);
+                    }
+
+                    @Override
+                    public void onNoAdLeft() {
+                        loadWhenReady(context, listener, extras, nativeAd);
+                    }
+
+                    @Override
+                    public void onFailed(@NonNull NativeErrorCode errorCode) {
+                        nativeAd.failed(listener, errorCode);
+                    }
+                };
+
+                final StartappNativeInventory.Flight flight = StartappNativeInventory.join(extras, waiter);
+                if (flight == null) {
+                    StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_ATTEMPTED);
+                    return;
+                }
 
-        new StartappStaticNativeAd().loadAd(context, extras, listener);
+                nativeAd.loadAd(context, extras, listener, flight);
+                return;
+            }
+
+            nativeAd.loadAd(context, extras, listener, null);
+        } finally {
+            StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_LOAD, traceNanos);
+        }
     }
 
     static class StartappStaticNativeAd extends StaticNativeAd {
         @Nullable
         private NativeAdDetails adDetails;
 
+        @Nullable
+        private String adTag;
+
+        private long loadStartNanos;
+        private long showStartNanos;
+
+        @Nullable
+        private StartappCircuitBreaker.Key breakerKey;
+
+        @Nullable
+        private Runnable loadDeadline;
+
+        // coalesced load this ad started, its waiters time out with it
+        @Nullable
+        private StartappNativeInventory.Flight flight;
+
+        // created on first use, shared by every view the ad is bound to
+        @Nullable
+        private NativeAdDisplayListener displayListener;
+
+        // view currently registered with the SDK, a RecyclerView binds the same ad to it again on every pass
+        @Nullable
+        private WeakReference<View> boundView;
+
+        private boolean isLoadTimedOut;
+
         @Override
         public void prepare(@NonNull View view) {
-            if (adDetails != null) {
-                adDetails.registerViewForInteraction(view, null, new NativeAdDisplayListener() {
-                    @Override
-                    public void adHidden(NativeAdInterface nativeAdInterface) {
-                        MoPubLog.log(AD_NETWORK_ID, DID_DISAPPEAR, LOG_TAG);
+            final long traceNanos = StartappMainThreadBudget.begin();
+            try {
+                if (showStartNanos == 0) {
+                    showStartNanos = System.nanoTime();
+                }
+
+                if (adDetails != null && !isBoundTo(view)) {
+                    if (displayListener == null) {
+                        displayListener = newDisplayListener();
                     }
 
-                    @Override
-                    public void adDisplayed(NativeAdInterface nativeAdInterface) {
+                    if (boundView != null) {
+                        adDetails.unregisterView();
+                    }
+
+                    adDetails.registerViewForInteraction(view, null, displayListener);
+                    boundView = new WeakReference<>(view);
+                }
+
+                super.prepare(view);
+            } finally {
+                StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_PREPARE, traceNanos);
+            }
+        }
+
+        @NonNull
+        private NativeAdDisplayListener newDisplayListener() {
+            return new NativeAdDisplayListener() {
+                @Override
+                public void adHidden(NativeAdInterface nativeAdInterface) {
+                    final long traceNanos = StartappMainThreadBudget.begin();
+                    try {
+                        StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, DID_DISAPPEAR);
+                    } finally {
+                        StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_AD_HIDDEN, traceNanos);
+                    }
+                }
+
+                @Override
+                public void adDisplayed(NativeAdInterface nativeAdInterface) {
+                    final long traceNanos = StartappMainThreadBudget.begin();
+                    try {
+                        StartappLatency.record(StartappLatency.Format.NATIVE, adTag, StartappLatency.Metric.SHOW, showStartNanos);
+
+                        // the displayed callback is the impression, no separate IMPRESSION is recorded
                         StartappStaticNativeAd.this.notifyAdImpressed();
 
-                        MoPubLog.log(AD_NETWORK_ID, SHOW_SUCCESS, LOG_TAG);
+                        StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, SHOW_SUCCESS);
+                    } finally {
+                        StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_AD_DISPLAYED, traceNanos);
                     }
+                }
 
-                    @Override
-                    public void adClicked(NativeAdInterface nativeAdInterface) {
+                @Override
+                public void adClicked(NativeAdInterface nativeAdInterface) {
+                    final long traceNanos = StartappMainThreadBudget.begin();
+                    try {
                         StartappStaticNativeAd.this.notifyAdClicked();
 
-                        MoPubLog.log(AD_NETWORK_ID, CLICKED, LOG_TAG);
+                        StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, CLICKED);
+                    } finally {
+                        StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_AD_CLICKED, traceNanos);
                     }
+                }
 
-                    @Override
-                    public void adNotDisplayed(NativeAdInterface nativeAdInterface) {
-                        MoPubLog.log(AD_NETWORK_ID, SHOW_FAILED, LOG_TAG);
+                @Override
+                public void adNotDisplayed(NativeAdInterface nativeAdInterface) {
+                    final long traceNanos = StartappMainThreadBudget.begin();
+                    try {
+                        StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, SHOW_FAILED);
+                    } finally {
+                        StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_AD_NOT_DISPLAYED, traceNanos);
                     }
-                });
-            }
+                }
+            };
+        }
 
-            super.prepare(view);
+        private boolean isBoundTo(@NonNull View view) {
+            return boundView != null && boundView.get() == view;
         }
 
         @Override
         public void clear(@NonNull View view) {
             super.clear(view);
 
-            if (adDetails != null) {
+            // a recycled view may be cleared after the ad already moved to another one
+            if (adDetails != null && isBoundTo(view)) {
                 adDetails.unregisterView();
+                boundView = null;
             }
         }
 
@@ -115,10 +295,21 @@ public class StartappNative extends CustomEventNative {
         public void destroy() {
             super.destroy();
 
+            if (loadDeadline != null) {
+                handler.removeCallbacks(loadDeadline);
+                loadDeadline = null;
+            }
+
+            if (adDetails != null) {
+                adDetails.unregisterView();
+            }
+
             adDetails = null;
+            displayListener = null;
+            boundView = null;
         }
 
-        private void populateAdProperties(boolean isContentAd) {
+        void populateAdProperties(boolean isContentAd) {
             if (adDetails == null) {
                 return;
             }
@@ -135,7 +326,7 @@ public class StartappNative extends CustomEventNative {
         }
 
         @NonNull
-        private static String mapCallToAction(@NonNull StartAppNativeAd.CampaignAction action) {
+        static String mapCallToAction(@NonNull StartAppNativeAd.CampaignAction action) {
             switch (action) {
                 case OPEN_MARKET:
                     return "Install";
@@ -146,64 +337,127 @@ public class StartappNative extends CustomEventNative {
         }
 
         void loadAd(
-                @NonNull final Context context,
-                @NonNull StartappAdapter.Extras extras,
-                @NonNull final CustomEventNativeListener listener
+                @NonNull Context context,
+                @NonNull final StartappAdapter.Extras extras,
+                @NonNull final CustomEventNativeListener listener,
+                @Nullable final StartappNativeInventory.Flight flight
         ) {
-            final StartAppNativeAd startappAds = new StartAppNativeAd(context);
+            // the SDK may keep the listener after the load, it must not hold on to an Activity
+            final Context appContext = context.getApplicationContext();
+            final StartAppNativeAd startappAds = new StartAppNativeAd(appContext);
+
+            this.flight = flight;
+
             final NativeAdPreferences prefs = (NativeAdPreferences) extras.getAdPreferences();
 
             startappAds.loadAd(prefs, new AdEventListener() {
                 @Override
                 public void onReceiveAd(@NonNull Ad ad) {
-                    final ArrayList<NativeAdDetails> ads = startappAds.getNativeAds();
-                    if (ads != null && !ads.isEmpty()) {
-                        adDetails = ads.get(0);
-
-                        if (adDetails != null) {
-                            populateAdProperties(prefs.isContentAd());
-
-                            if (prefs.isContentAd()) {
-                                MoPubLog.log(AD_NETWORK_ID, LOAD_SUCCESS, LOG_TAG);
-
-                                listener.onNativeAdLoaded(StartappStaticNativeAd.this);
-                            } else {
-                                final List<String> imageUrls = new ArrayList<>(2);
-
-                                if (!TextUtils.isEmpty(adDetails.getImageUrl())) {
-                                    imageUrls.add(adDetails.getImageUrl());
+                    final long traceNanos = StartappMainThreadBudget.begin();
+                    try {
+                        final List<StartappNativeInventory.Waiter> waiters = StartappNativeInventory.complete(flight);
+
+                        final ArrayList<NativeAdDetails> ads = startappAds.getNativeAds();
+                        if (ads != null && !ads.isEmpty() && ads.get(0) != null) {
+                            StartappCircuitBreaker.onLoaded(breakerKey);
+
+                            int next = 1;
+                            for (StartappNativeInventory.Waiter waiter : waiters) {
+                                final NativeAdDetails details = next < ads.size() ? ads.get(next++) : null;
+                                if (details != null) {
+                                    waiter.onAdReceived(details);
+                                } else {
+                                    waiter.onNoAdLeft();
                                 }
+                            }
 
-                                if (!TextUtils.isEmpty(adDetails.getSecondaryImageUrl())) {
-                                    imageUrls.add(adDetails.getSecondaryImageUrl());
-                                }
+                            StartappNativeInventory.offer(extras, ads.subList(Math.min(next, ads.size()), ads.size()));
 
-                                preCacheImages(context, imageUrls, listener);
+                            if (isLoadTimedOut) {
+                                StartappNativeInventory.offer(extras, ads.subList(0, 1));
+                                return;
                             }
+
+                            onAdReceived(appContext, ads.get(0), extras, listener);
                         } else {
+                            StartappCircuitBreaker.onFailed(breakerKey, true);
+
+                            for (StartappNativeInventory.Waiter waiter : waiters) {
+                                waiter.onFailed(NativeErrorCode.NETWORK_NO_FILL);
+                            }
+
                             failed(listener);
                         }
-                    } else {
-                        failed(listener);
+                    } finally {
+                        StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_ON_RECEIVE_AD, traceNanos);
                     }
                 }
 
                 @Override
                 public void onFailedToReceiveAd(@NonNull Ad ad) {
-                    final String message = ad.getErrorMessage();
-                    final NativeErrorCode errorCode = (message != null && (message.contains("204") || message.contains("Empty Response")))
-                            ? NativeErrorCode.NETWORK_NO_FILL
-                            : NativeErrorCode.UNSPECIFIED;
+                    final long traceNanos = StartappMainThreadBudget.begin();
+                    try {
+                        final String message = ad.getErrorMessage();
+                        final NativeErrorCode errorCode = StartappErrors.isNoFill(message)
+                                ? NativeErrorCode.NETWORK_NO_FILL
+                                : NativeErrorCode.UNSPECIFIED;
 
-                    MoPubLog.log(AD_NETWORK_ID, LOAD_FAILED, LOG_TAG,
-                            errorCode.getIntCode(),
-                            errorCode);
+                        StartappCircuitBreaker.onFailed(breakerKey, errorCode == NativeErrorCode.NETWORK_NO_FILL);
 
-                    listener.onNativeAdFailed(errorCode);
+                        for (StartappNativeInventory.Waiter waiter : StartappNativeInventory.complete(flight)) {
+                            waiter.onFailed(errorCode);
+                        }
+
+                        failed(listener, errorCode);
+                    } finally {
+                        StartappMainThreadBudget.end(StartappMainThreadBudget.Point.NATIVE_ON_FAILED_TO_RECEIVE_AD, traceNanos);
+                    }
                 }
             });
 
-            MoPubLog.log(AD_NETWORK_ID, LOAD_ATTEMPTED, LOG_TAG);
+            StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_ATTEMPTED);
+        }
+
+        void onAdReceived(
+                @NonNull Context context,
+                @NonNull NativeAdDetails details,
+                @NonNull StartappAdapter.Extras extras,
+                @NonNull CustomEventNativeListener listener
+        ) {
+            final boolean isContentAd = extras.isContentAd();
+
+            adDetails = details;
+
+            populateAdProperties(isContentAd);
+
+            if (isContentAd) {
+                loaded(listener);
+            } else {
+                if (StartappSettings.isNativeProgressiveLoadEnabled()) {
+                    // started first so that views bound from onNativeAdLoaded join these fetches
+                    streamImages(details, extras);
+
+                    loaded(listener);
+                    return;
+                }
+
+                if (StartappSettings.isNativeImagePipelineEnabled()) {
+                    loadImages(details, extras, listener);
+                    return;
+                }
+
+                final List<String> imageUrls = new ArrayList<>(2);
+
+                if (!TextUtils.isEmpty(details.getImageUrl())) {
+                    imageUrls.add(details.getImageUrl());
+                }
+
+                if (!TextUtils.isEmpty(details.getSecondaryImageUrl())) {
+                    imageUrls.add(details.getSecondaryImageUrl());
+                }
+
+                preCacheImages(context, imageUrls, listener);
+            }
         }
 
         private void preCacheImages(
@@ -214,28 +468,192 @@ public class StartappNative extends CustomEventNative {
             NativeImageHelper.preCacheImages(context, imageUrls, new NativeImageHelper.ImageListener() {
                 @Override
                 public void onImagesCached() {
-                    MoPubLog.log(AD_NETWORK_ID, LOAD_SUCCESS, LOG_TAG);
-
-                    listener.onNativeAdLoaded(StartappStaticNativeAd.this);
+                    loaded(listener);
                 }
 
                 @Override
                 public void onImagesFailedToCache(@NonNull NativeErrorCode errorCode) {
-                    MoPubLog.log(AD_NETWORK_ID, LOAD_FAILED, LOG_TAG,
+                    failed(listener, errorCode);
+                }
+            });
+        }
+
+        private void loadImages(
+                @NonNull NativeAdDetails details,
+                @NonNull StartappAdapter.Extras extras,
+                @NonNull final CustomEventNativeListener listener
+        ) {
+            final String imageUrl = details.getImageUrl();
+            final String secondaryImageUrl = details.getSecondaryImageUrl();
+            final int count = (TextUtils.isEmpty(imageUrl) ? 0 : 1) + (TextUtils.isEmpty(secondaryImageUrl) ? 0 : 1);
+
+            if (count == 0) {
+                loaded(listener);
+                return;
+            }
+
+            final StartappNativeImageLoader.Listener imageListener = new StartappNativeImageLoader.Listener() {
+                private int remaining = count;
+                private boolean isFailed;
+
+                @Override
+                public void onImageLoaded(@NonNull String url, @NonNull Bitmap bitmap) {
+                    if (--remaining == 0 && !isFailed) {
+                        loaded(listener);
+                    }
+                }
+
+                @Override
+                public void onImageFailed(@NonNull String url) {
+                    --remaining;
+
+                    if (!isFailed) {
+                        isFailed = true;
+
+                        failed(listener, NativeErrorCode.IMAGE_DOWNLOAD_FAILURE);
+                    }
+                }
+            };
+
+            if (!TextUtils.isEmpty(imageUrl)) {
+                final StartappAdapter.Extras.Size size = extras.getNativeImageSize();
+                StartappNativeImageLoader.load(imageUrl,
+                        size != null ? size.getWidth() : 0,
+                        size != null ? size.getHeight() : 0,
+                        imageListener);
+            }
+
+            if (!TextUtils.isEmpty(secondaryImageUrl)) {
+                final StartappAdapter.Extras.Size size = extras.getNativeSecondaryImageSize();
+                StartappNativeImageLoader.load(secondaryImageUrl,
+                        size != null ? size.getWidth() : 0,
+                        size != null ? size.getHeight() : 0,
+                        imageListener);
+            }
+        }
+
+        private void streamImages(@NonNull NativeAdDetails details, @NonNull StartappAdapter.Extras extras) {
+            final StartappNativeImageLoader.Listener imageListener = new StartappNativeImageLoader.Listener() {
+                @Override
+                public void onImageLoaded(@NonNull String url, @NonNull Bitmap bitmap) {
+                    // views bound to the url joined this fetch and got the image from it, later binds hit the cache
+                }
+
+                @Override
+                public void onImageFailed(@NonNull String url) {
+                    StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_FAILED,
+                            NativeErrorCode.IMAGE_DOWNLOAD_FAILURE.getIntCode(),
+                            NativeErrorCode.IMAGE_DOWNLOAD_FAILURE);
+
+                    // only ads rendered after this drop the image, earlier ones already hold its url
+                    if (url.equals(getMainImageUrl())) {
+                        setMainImageUrl(null);
+                    }
+
+                    if (url.equals(getIconImageUrl())) {
+                        setIconImageUrl(null);
+                    }
+                }
+            };
+
+            final String imageUrl = details.getImageUrl();
+            if (!TextUtils.isEmpty(imageUrl)) {
+                final StartappAdapter.Extras.Size size = extras.getNativeImageSize();
+                StartappNativeImageLoader.load(imageUrl,
+                        size != null ? size.getWidth() : 0,
+                        size != null ? size.getHeight() : 0,
+                        imageListener);
+            }
+
+            final String secondaryImageUrl = details.getSecondaryImageUrl();
+            if (!TextUtils.isEmpty(secondaryImageUrl)) {
+                final StartappAdapter.Extras.Size size = extras.getNativeSecondaryImageSize();
+                StartappNativeImageLoader.load(secondaryImageUrl,
+                        size != null ? size.getWidth() : 0,
+                        size != null ? size.getHeight() : 0,
+                        imageListener);
+            }
+        }
+
+        void startLoadDeadline(@NonNull final CustomEventNativeListener listener) {
+            if (loadDeadline != null || isLoadTimedOut || !StartappSettings.isLoadDeadlinesEnabled()) {
+                return;
+            }
+
+            loadDeadline = new Runnable() {
+                @Override
+                public void run() {
+                    loadDeadline = null;
+                    isLoadTimedOut = true;
+
+                    final NativeErrorCode errorCode = NativeErrorCode.NETWORK_TIMEOUT;
+
+                    StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_FAILED,
                             errorCode.getIntCode(),
                             errorCode);
 
+                    StartappCircuitBreaker.onFailed(breakerKey, false);
+                    StartappLatency.record(StartappLatency.Format.NATIVE, adTag, StartappLatency.Metric.LOAD_FAILURE, loadStartNanos);
+
+                    adDetails = null;
+
+                    for (StartappNativeInventory.Waiter waiter : StartappNativeInventory.complete(flight)) {
+                        waiter.onFailed(errorCode);
+                    }
+
+                    flight = null;
+
                     listener.onNativeAdFailed(errorCode);
                 }
-            });
+            };
+
+            handler.postDelayed(loadDeadline, StartappSettings.getLoadDeadlineMillis(StartappLatency.Format.NATIVE));
+        }
+
+        /**
+         * @return false if the deadline has already failed the load, the result must then be ignored
+         */
+        private boolean finishLoad() {
+            if (isLoadTimedOut) {
+                return false;
+            }
+
+            if (loadDeadline != null) {
+                handler.removeCallbacks(loadDeadline);
+                loadDeadline = null;
+            }
+
+            return true;
         }
 
         private void failed(@NonNull CustomEventNativeListener listener) {
-            MoPubLog.log(AD_NETWORK_ID, LOAD_FAILED, LOG_TAG,
-                    NativeErrorCode.NETWORK_NO_FILL.getIntCode(),
-                    NativeErrorCode.NETWORK_NO_FILL);
+            failed(listener, NativeErrorCode.NETWORK_NO_FILL);
+        }
+
+        private void failed(@NonNull CustomEventNativeListener listener, @NonNull NativeErrorCode errorCode) {
+            if (!finishLoad()) {
+                return;
+            }
+
+            StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_FAILED,
+                    errorCode.getIntCode(),
+                    errorCode);
+
+            StartappLatency.record(StartappLatency.Format.NATIVE, adTag, StartappLatency.Metric.LOAD_FAILURE, loadStartNanos);
+
+            listener.onNativeAdFailed(errorCode);
+        }
+
+        private void loaded(@NonNull CustomEventNativeListener listener) {
+            if (!finishLoad()) {
+                return;
+            }
+
+            StartappLog.event(StartappLatency.Format.NATIVE, LOG_TAG, LOAD_SUCCESS);
+
+            StartappLatency.record(StartappLatency.Format.NATIVE, adTag, StartappLatency.Metric.LOAD_SUCCESS, loadStartNanos);
 
-            listener.onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+            listener.onNativeAdLoaded(this);
         }
     }
 }
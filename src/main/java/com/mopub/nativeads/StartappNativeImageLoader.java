@@ -0,0 +1,452 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.nativeads;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.animation.AlphaAnimation;
+import android.widget.ImageView;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.mobileads.StartappSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches native ad images in parallel, decodes them downsampled to the size they are displayed at
+ * and keeps them in an LRU cache bounded by {@link StartappSettings#getNativeImageCacheSize()}.
+ * Images are cached per url, keeping the largest decode, which serves every request it has enough pixels for.
+ * Concurrent requests for the same url share a single fetch when it decodes enough pixels for them.
+ */
+@Keep
+public final class StartappNativeImageLoader {
+    private static final int THREAD_COUNT = 3;
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    interface Listener {
+        void onImageLoaded(@NonNull String url, @NonNull Bitmap bitmap);
+
+        void onImageFailed(@NonNull String url);
+    }
+
+    /**
+     * Lets the host style images bound with {@link #bind(ImageView, String)} while they are loading.
+     */
+    @Keep
+    public interface DisplayHooks {
+        void onPlaceholder(@NonNull ImageView imageView);
+
+        void onImageReady(@NonNull ImageView imageView, @NonNull Bitmap bitmap, boolean isFromCache);
+    }
+
+    @Keep
+    public static class DefaultDisplayHooks implements DisplayHooks {
+        private static final long FADE_IN_MILLIS = 150;
+
+        @Override
+        public void onPlaceholder(@NonNull ImageView imageView) {
+            imageView.setImageDrawable(null);
+        }
+
+        @Override
+        public void onImageReady(@NonNull ImageView imageView, @NonNull Bitmap bitmap, boolean isFromCache) {
+            imageView.setImageBitmap(bitmap);
+
+            if (!isFromCache) {
+                final AlphaAnimation animation = new AlphaAnimation(0f, 1f);
+                animation.setDuration(FADE_IN_MILLIS);
+                imageView.startAnimation(animation);
+            }
+        }
+    }
+
+    @NonNull
+    private static volatile DisplayHooks displayHooks = new DefaultDisplayHooks();
+
+    public static void setDisplayHooks(@NonNull DisplayHooks hooks) {
+        displayHooks = hooks;
+    }
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final Map<String, Fetch> inFlight = new HashMap<>();
+
+    // url each view was last bound to, only touched on the main thread
+    private static final Map<ImageView, String> boundUrls = new WeakHashMap<>();
+
+    @Nullable
+    private static ExecutorService executor;
+
+    @Nullable
+    private static LruCache<String, Image> cache;
+
+    private static final class Image {
+        @NonNull
+        final Bitmap bitmap;
+
+        // 1 when decoded at full size
+        final int sampleSize;
+
+        Image(@NonNull Bitmap bitmap, int sampleSize) {
+            this.bitmap = bitmap;
+            this.sampleSize = sampleSize;
+        }
+
+        boolean covers(int targetWidth, int targetHeight) {
+            return sampleSize == 1 || isSized(targetWidth, targetHeight)
+                    && bitmap.getWidth() >= targetWidth
+                    && bitmap.getHeight() >= targetHeight;
+        }
+    }
+
+    private static final class Request {
+        @NonNull
+        final Listener listener;
+
+        final int targetWidth;
+        final int targetHeight;
+
+        Request(@NonNull Listener listener, int targetWidth, int targetHeight) {
+            this.listener = listener;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+        }
+    }
+
+    private static final class Fetch {
+        // 0 when decoded at full size
+        final int decodeWidth;
+        final int decodeHeight;
+
+        final List<Request> requests = new ArrayList<>(2);
+
+        Fetch(int decodeWidth, int decodeHeight) {
+            this.decodeWidth = decodeWidth;
+            this.decodeHeight = decodeHeight;
+        }
+
+        boolean covers(int targetWidth, int targetHeight) {
+            return !isSized(decodeWidth, decodeHeight) || isSized(targetWidth, targetHeight)
+                    && decodeWidth >= roundUp(targetWidth)
+                    && decodeHeight >= roundUp(targetHeight);
+        }
+    }
+
+    private StartappNativeImageLoader() {
+    }
+
+    /**
+     * Sets the cached image for {@code url} to {@code imageView}, loading it first if needed.
+     * Before layout the load waits for the view's first draw, when its size is known.
+     */
+    public static void bind(@NonNull final ImageView imageView, @Nullable final String url) {
+        if (url == null) {
+            boundUrls.remove(imageView);
+            imageView.setImageDrawable(null);
+            return;
+        }
+
+        boundUrls.put(imageView, url);
+
+        if (imageView.getWidth() > 0 && imageView.getHeight() > 0) {
+            bind(imageView, url, imageView.getWidth(), imageView.getHeight());
+            return;
+        }
+
+        final ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (params != null && params.width > 0 && params.height > 0) {
+            bind(imageView, url, params.width, params.height);
+            return;
+        }
+
+        displayHooks.onPlaceholder(imageView);
+
+        final ViewTreeObserver observer = imageView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                final ViewTreeObserver current = imageView.getViewTreeObserver();
+                if (current.isAlive()) {
+                    current.removeOnPreDrawListener(this);
+                }
+
+                // rebound to another url meanwhile
+                if (!url.equals(boundUrls.get(imageView))) {
+                    return true;
+                }
+
+                int width = imageView.getWidth();
+                int height = imageView.getHeight();
+
+                if (width <= 0 || height <= 0) {
+                    // laid out empty, e.g. wrap_content before the image arrives
+                    final DisplayMetrics metrics = imageView.getResources().getDisplayMetrics();
+                    width = metrics.widthPixels;
+                    height = metrics.heightPixels;
+                }
+
+                bind(imageView, url, width, height);
+                return true;
+            }
+        });
+    }
+
+    private static void bind(@NonNull ImageView imageView, @NonNull String url, int width, int height) {
+        final DisplayHooks hooks = displayHooks;
+
+        final Image cached = getCache().get(url);
+        if (cached != null && cached.covers(width, height)) {
+            hooks.onImageReady(imageView, cached.bitmap, true);
+            return;
+        }
+
+        hooks.onPlaceholder(imageView);
+
+        // the fetch may outlive the view's Activity
+        final WeakReference<ImageView> imageViewRef = new WeakReference<>(imageView);
+
+        load(url, width, height, new Listener() {
+            @Override
+            public void onImageLoaded(@NonNull String loadedUrl, @NonNull Bitmap bitmap) {
+                final ImageView view = imageViewRef.get();
+                if (view != null && loadedUrl.equals(boundUrls.get(view))) {
+                    hooks.onImageReady(view, bitmap, false);
+                }
+            }
+
+            @Override
+            public void onImageFailed(@NonNull String failedUrl) {
+                // keep whatever the view shows
+            }
+        });
+    }
+
+    /**
+     * @return the image for {@code url} decoded at full size, if cached
+     */
+    @Nullable
+    public static Bitmap getCached(@NonNull String url) {
+        final Image cached = getCache().get(url);
+        return cached != null && cached.sampleSize == 1 ? cached.bitmap : null;
+    }
+
+    /**
+     * @param targetWidth  size the image is displayed at, 0 to decode it at full size
+     * @param targetHeight size the image is displayed at, 0 to decode it at full size
+     */
+    static void load(@NonNull final String url, int targetWidth, int targetHeight, @NonNull Listener listener) {
+        final Image cached = getCache().get(url);
+        if (cached != null && cached.covers(targetWidth, targetHeight)) {
+            listener.onImageLoaded(url, cached.bitmap);
+            return;
+        }
+
+        final Fetch fetch;
+        synchronized (inFlight) {
+            // a fetch too small for this request is still joined, the request loads again once it is done
+            final Fetch current = inFlight.get(url);
+            if (current != null) {
+                current.requests.add(new Request(listener, targetWidth, targetHeight));
+                return;
+            }
+
+            // decoded for the bucket rather than the exact size, so requests joining later likely get enough pixels
+            fetch = isSized(targetWidth, targetHeight)
+                    ? new Fetch(roundUp(targetWidth), roundUp(targetHeight))
+                    : new Fetch(0, 0);
+            fetch.requests.add(new Request(listener, targetWidth, targetHeight));
+            inFlight.put(url, fetch);
+        }
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Image image = fetch(url, fetch.decodeWidth, fetch.decodeHeight);
+                if (image != null) {
+                    put(url, image);
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (inFlight) {
+                            inFlight.remove(url);
+                        }
+
+                        for (Request request : fetch.requests) {
+                            if (image == null) {
+                                request.listener.onImageFailed(url);
+                            } else if (image.covers(request.targetWidth, request.targetHeight)) {
+                                request.listener.onImageLoaded(url, image.bitmap);
+                            } else {
+                                load(url, request.targetWidth, request.targetHeight, request.listener);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Caches {@code image} unless a larger decode of {@code url} is already cached.
+     */
+    private static void put(@NonNull String url, @NonNull Image image) {
+        final LruCache<String, Image> cache = getCache();
+
+        synchronized (cache) {
+            final Image cached = cache.get(url);
+            if (cached == null || image.sampleSize <= cached.sampleSize) {
+                cache.put(url, image);
+            }
+        }
+    }
+
+    @Nullable
+    private static Image fetch(@NonNull String url, int targetWidth, int targetHeight) {
+        HttpURLConnection connection = null;
+
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+
+            final byte[] data = readFully(connection.getInputStream());
+            return decode(data, targetWidth, targetHeight);
+        } catch (IOException | RuntimeException | OutOfMemoryError ex) {
+            return null;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Nullable
+    private static Image decode(@NonNull byte[] data, int targetWidth, int targetHeight) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+
+        if (isSized(targetWidth, targetHeight)) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+            options.inJustDecodeBounds = false;
+        }
+
+        final Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        return bitmap != null ? new Image(bitmap, options.inSampleSize) : null;
+    }
+
+    private static boolean isSized(int targetWidth, int targetHeight) {
+        return targetWidth > 0 && targetHeight > 0;
+    }
+
+    /**
+     * @return smallest power of two not below {@code size}
+     */
+    static int roundUp(int size) {
+        final int result = Integer.highestOneBit(size);
+        return result == size ? result : result << 1;
+    }
+
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int result = 1;
+
+        while (width / (result * 2) >= targetWidth && height / (result * 2) >= targetHeight) {
+            result *= 2;
+        }
+
+        return result;
+    }
+
+    @NonNull
+    private static byte[] readFully(@NonNull InputStream stream) throws IOException {
+        try {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                result.write(buffer, 0, count);
+            }
+
+            return result.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    @NonNull
+    private static synchronized LruCache<String, Image> getCache() {
+        if (cache == null) {
+            cache = new LruCache<String, Image>(Math.max(1, StartappSettings.getNativeImageCacheSize())) {
+                @Override
+                protected int sizeOf(String key, Image value) {
+                    return value.bitmap.getRowBytes() * value.bitmap.getHeight();
+                }
+            };
+        }
+
+        return cache;
+    }
+
+    @NonNull
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "StartappNativeImage-" + counter.incrementAndGet());
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+
+        return executor;
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.nativeads;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.mobileads.StartappAdapter;
+import com.mopub.mobileads.StartappSettings;
+import com.startapp.sdk.ads.nativead.NativeAdDetails;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Native ads returned by a single {@code StartAppNativeAd.loadAd} but not consumed by it,
+ * queued per placement {@link Key} until they expire.
+ * Also tracks the loads in flight per placement so that concurrent identical requests wait for them.
+ */
+final class StartappNativeInventory {
+    private static final int MAX_CONFIGS = 8;
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    private static final LinkedHashMap<Key, ArrayDeque<Entry>> queues =
+            new LinkedHashMap<Key, ArrayDeque<Entry>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, ArrayDeque<Entry>> eldest) {
+                    return size() > MAX_CONFIGS;
+                }
+            };
+
+    private StartappNativeInventory() {
+    }
+
+    /**
+     * Fields of the {@link StartappAdapter.Extras} that select which ads a load returns.
+     * Extras are compared by identity and a placement may be compiled into several instances.
+     */
+    static final class Key {
+        @Nullable
+        private final String adTag;
+
+        @Nullable
+        private final Double minCPM;
+
+        @Nullable
+        private final StartappAdapter.Extras.Size imageSize;
+
+        @Nullable
+        private final StartappAdapter.Extras.Size secondaryImageSize;
+
+        private final boolean isContentAd;
+        private final int adsNumber;
+
+        Key(@NonNull StartappAdapter.Extras extras) {
+            adTag = extras.getAdTag();
+            minCPM = extras.getMinCPM();
+            imageSize = extras.getNativeImageSize();
+            secondaryImageSize = extras.getNativeSecondaryImageSize();
+            isContentAd = extras.isContentAd();
+            adsNumber = StartappSettings.getNativeAdsPerRequest();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return isContentAd == key.isContentAd
+                    && adsNumber == key.adsNumber
+                    && imageSize == key.imageSize
+                    && secondaryImageSize == key.secondaryImageSize
+                    && (adTag != null ? adTag.equals(key.adTag) : key.adTag == null)
+                    && (minCPM != null ? minCPM.equals(key.minCPM) : key.minCPM == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = adTag != null ? adTag.hashCode() : 0;
+            result = 31 * result + (minCPM != null ? minCPM.hashCode() : 0);
+            result = 31 * result + (imageSize != null ? imageSize.hashCode() : 0);
+            result = 31 * result + (secondaryImageSize != null ? secondaryImageSize.hashCode() : 0);
+            result = 31 * result + (isContentAd ? 1 : 0);
+            result = 31 * result + adsNumber;
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        @NonNull
+        final NativeAdDetails details;
+
+        final long expiresAt;
+
+        Entry(@NonNull NativeAdDetails details, long expiresAt) {
+            this.details = details;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    static void offer(@NonNull StartappAdapter.Extras extras, @NonNull List<NativeAdDetails> ads) {
+        if (ads.isEmpty()) {
+            return;
+        }
+
+        final Key key = new Key(extras);
+        final long expiresAt = SystemClock.elapsedRealtime() + StartappSettings.getNativeInventoryTtlMillis();
+
+        synchronized (queues) {
+            ArrayDeque<Entry> queue = queues.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(key, queue);
+            }
+
+            for (NativeAdDetails details : ads) {
+                if (details != null) {
+                    queue.addLast(new Entry(details, expiresAt));
+                }
+            }
+        }
+    }
+
+    @Nullable
+    static NativeAdDetails poll(@NonNull StartappAdapter.Extras extras) {
+        final Key key = new Key(extras);
+        final long now = SystemClock.elapsedRealtime();
+
+        synchronized (queues) {
+            final ArrayDeque<Entry> queue = queues.get(key);
+            if (queue == null) {
+                return null;
+            }
+
+            Entry entry;
+            while ((entry = queue.pollFirst()) != null) {
+                if (entry.expiresAt > now) {
+                    return entry.details;
+                }
+            }
+
+            queues.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * @return number of kept ads for {@code extras} that have not expired
+     */
+    static int count(@NonNull StartappAdapter.Extras extras) {
+        final Key key = new Key(extras);
+        final long now = SystemClock.elapsedRealtime();
+
+        synchronized (queues) {
+            final ArrayDeque<Entry> queue = queues.get(key);
+            if (queue == null) {
+                return 0;
+            }
+
+            int result = 0;
+            for (Entry entry : queue) {
+                if (entry.expiresAt > now) {
+                    ++result;
+                }
+            }
+
+            return result;
+        }
+    }
+
+    interface Waiter {
+        void onAdReceived(@NonNull NativeAdDetails details);
+
+        /**
+         * The shared load returned fewer ads than there were waiters.
+         */
+        void onNoAdLeft();
+
+        void onFailed(@NonNull NativeErrorCode errorCode);
+    }
+
+    /**
+     * A load in flight and the waiters queued on it. As a {@link Runnable} it times the load out.
+     */
+    static final class Flight implements Runnable {
+        @NonNull
+        private final Key key;
+
+        private final List<Waiter> waiters = new ArrayList<>(2);
+
+        private Flight(@NonNull Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            for (Waiter waiter : complete(this)) {
+                waiter.onFailed(NativeErrorCode.NETWORK_TIMEOUT);
+            }
+        }
+    }
+
+    private static final Map<Key, Flight> flights = new HashMap<>();
+
+    /**
+     * @return null if a load for {@code extras} is already in flight and {@code waiter} was queued on it,
+     * otherwise the flight the caller has to load for and report with {@link #complete}. A flight not completed
+     * within {@link StartappSettings#getLoadCoalescingTimeoutMillis()} fails its waiters with NETWORK_TIMEOUT.
+     */
+    @Nullable
+    static Flight join(@NonNull StartappAdapter.Extras extras, @NonNull Waiter waiter) {
+        final Key key = new Key(extras);
+        final Flight flight;
+
+        synchronized (flights) {
+            final Flight current = flights.get(key);
+            if (current != null) {
+                current.waiters.add(waiter);
+                return null;
+            }
+
+            flight = new Flight(key);
+            flights.put(key, flight);
+        }
+
+        handler.postDelayed(flight, StartappSettings.getLoadCoalescingTimeoutMillis());
+        return flight;
+    }
+
+    /**
+     * Ends {@code flight} once, later calls return no waiter.
+     *
+     * @return waiters queued on {@code flight} while it was in flight
+     */
+    @NonNull
+    static List<Waiter> complete(@Nullable Flight flight) {
+        if (flight == null) {
+            return Collections.emptyList();
+        }
+
+        handler.removeCallbacks(flight);
+
+        synchronized (flights) {
+            if (flights.get(flight.key) == flight) {
+                flights.remove(flight.key);
+            }
+
+            final List<Waiter> waiters = new ArrayList<>(flight.waiters);
+            flight.waiters.clear();
+            return waiters;
+        }
+    }
+}
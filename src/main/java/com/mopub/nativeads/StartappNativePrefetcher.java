@@ -0,0 +1,285 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.mobileads.StartappAdapter;
+import com.mopub.mobileads.StartappCircuitBreaker;
+import com.mopub.mobileads.StartappErrors;
+import com.mopub.mobileads.StartappLatency;
+import com.mopub.mobileads.StartappLoadScheduler;
+import com.mopub.mobileads.StartappSettings;
+import com.startapp.sdk.ads.nativead.NativeAdDetails;
+import com.startapp.sdk.ads.nativead.NativeAdPreferences;
+import com.startapp.sdk.ads.nativead.StartAppNativeAd;
+import com.startapp.sdk.adsbase.Ad;
+import com.startapp.sdk.adsbase.adlisteners.AdEventListener;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps native ads loaded ahead of a scrolling feed. The host reports its viewport and scroll velocity,
+ * the prefetcher loads enough ads for the ad slots the feed will reach within {@link #LOAD_AHEAD_MILLIS}
+ * into the inventory {@link StartappNative} serves its loads from, so a fling does not outrun the ads.
+ * The inventory is keyed on the placement values, not on the extras map, so the feed's own requests
+ * are served even though MoPub passes them a different serverExtras instance.
+ * When the feed goes idle the scheduled ticks and a load still waiting for the SDK initialization are cancelled,
+ * the SDK cannot abort a load already sent to the network. Must be used on the main thread.
+ */
+@Keep
+public final class StartappNativePrefetcher {
+    static final long LOAD_AHEAD_MILLIS = 2000;
+
+    private static final long THROTTLE_MILLIS = 100;
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    @NonNull
+    private final Context appContext;
+
+    @NonNull
+    private final StartappAdapter.Extras extras;
+
+    @NonNull
+    private final StartappCircuitBreaker.Key breakerKey;
+
+    private final int adInterval;
+
+    private int firstVisiblePosition;
+    private int lastVisiblePosition;
+    private float itemsPerSecond;
+
+    private boolean isScrolling;
+    private boolean isTickPosted;
+    private boolean isLoading;
+    private boolean isLoadSent;
+    private boolean isDestroyed;
+
+    @Nullable
+    private Runnable loadDeadline;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            isTickPosted = false;
+            prefetchIfNeeded();
+        }
+    };
+
+    /**
+     * @param localExtras  same local extras as the feed's native ad requests
+     * @param serverExtras custom event data of the Start.io line item
+     * @param adInterval   number of feed positions between two ads
+     */
+    public StartappNativePrefetcher(
+            @NonNull Context context,
+            @Nullable Map<String, Object> localExtras,
+            @NonNull Map<String, String> serverExtras,
+            int adInterval
+    ) {
+        appContext = context.getApplicationContext();
+        extras = StartappAdapter.Extras.compile(localExtras, serverExtras, true);
+        breakerKey = new StartappCircuitBreaker.Key(StartappLatency.Format.NATIVE, extras.getAdTag(), extras.getMinCPM());
+        this.adInterval = Math.max(1, adInterval);
+
+        StartappAdapter.initializeSdkIfNeeded(context, extras.getAppId());
+    }
+
+    /**
+     * Call from the feed's scroll listener.
+     *
+     * @param itemsPerSecond scroll velocity in feed positions, positive towards higher positions
+     */
+    public void onScrolled(int firstVisiblePosition, int lastVisiblePosition, float itemsPerSecond) {
+        if (isDestroyed) {
+            return;
+        }
+
+        this.firstVisiblePosition = firstVisiblePosition;
+        this.lastVisiblePosition = Math.max(firstVisiblePosition, lastVisiblePosition);
+        this.itemsPerSecond = itemsPerSecond;
+
+        isScrolling = true;
+        postTick();
+    }
+
+    /**
+     * Stops scheduling loads and cancels a load that was not sent yet,
+     * a load already sent to the network still ends up in the inventory.
+     */
+    public void onScrollIdle() {
+        isScrolling = false;
+
+        if (isTickPosted) {
+            handler.removeCallbacks(tick);
+            isTickPosted = false;
+        }
+
+        cancelPendingLoad();
+    }
+
+    public void destroy() {
+        isDestroyed = true;
+        onScrollIdle();
+    }
+
+    /**
+     * @return number of ad slots between the viewport and the position the feed reaches within
+     * {@link #LOAD_AHEAD_MILLIS}, bounded by {@link StartappSettings#getNativePrefetchMaxAhead()}
+     */
+    int getTargetCount() {
+        final int visibleCount = lastVisiblePosition - firstVisiblePosition + 1;
+        final float aheadPositions = visibleCount + Math.abs(itemsPerSecond) * LOAD_AHEAD_MILLIS / 1000f;
+
+        final int result = (int) Math.ceil(aheadPositions / adInterval);
+        return Math.min(result, StartappSettings.getNativePrefetchMaxAhead());
+    }
+
+    private void postTick() {
+        // throttled rather than debounced, a fling reports a scroll every frame
+        if (!isTickPosted) {
+            isTickPosted = true;
+            handler.postDelayed(tick, THROTTLE_MILLIS);
+        }
+    }
+
+    /**
+     * Evaluated against the latest viewport only, so work planned for positions the feed has already passed is dropped.
+     */
+    private void prefetchIfNeeded() {
+        if (!isScrolling || isLoading || isDestroyed) {
+            return;
+        }
+
+        if (StartappNativeInventory.count(extras) >= getTargetCount()) {
+            return;
+        }
+
+        // native ads are not videos, only the connectivity matters
+        if (StartappLoadScheduler.isOffline(appContext)) {
+            return;
+        }
+
+        if (!StartappCircuitBreaker.allowRequest(breakerKey)) {
+            return;
+        }
+
+        isLoading = true;
+
+        // the SDK may never call back, e.g. while initialization keeps failing, so the load gets
+        // the same deadline as a native request and a late result is still offered to the inventory
+        final Runnable deadline = new Runnable() {
+            @Override
+            public void run() {
+                loadDeadline = null;
+                isLoading = false;
+                isLoadSent = false;
+
+                StartappCircuitBreaker.onFailed(breakerKey, false);
+
+                if (isScrolling) {
+                    postTick();
+                }
+            }
+        };
+
+        loadDeadline = deadline;
+        handler.postDelayed(deadline, StartappSettings.getLoadDeadlineMillis(StartappLatency.Format.NATIVE));
+
+        StartappAdapter.runWhenSdkReady(new Runnable() {
+            @Override
+            public void run() {
+                if (loadDeadline == deadline) {
+                    isLoadSent = true;
+                    load(deadline);
+                }
+            }
+        });
+    }
+
+    private void load(@NonNull final Runnable deadline) {
+        final StartAppNativeAd nativeAd = new StartAppNativeAd(appContext);
+
+        nativeAd.loadAd((NativeAdPreferences) extras.getAdPreferences(), new AdEventListener() {
+            @Override
+            public void onReceiveAd(@NonNull Ad ad) {
+                final boolean isCurrent = finishLoad(deadline);
+
+                final List<NativeAdDetails> ads = nativeAd.getNativeAds();
+                if (ads != null && !ads.isEmpty()) {
+                    StartappNativeInventory.offer(extras, ads);
+
+                    if (isCurrent) {
+                        StartappCircuitBreaker.onLoaded(breakerKey);
+
+                        if (isScrolling) {
+                            postTick();
+                        }
+                    }
+                } else if (isCurrent) {
+                    StartappCircuitBreaker.onFailed(breakerKey, true);
+                }
+            }
+
+            @Override
+            public void onFailedToReceiveAd(@NonNull Ad ad) {
+                if (finishLoad(deadline)) {
+                    StartappCircuitBreaker.onFailed(breakerKey, StartappErrors.isNoFill(ad.getErrorMessage()));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return false if the deadline has already released the load, the breaker must then not count it again
+     */
+    private boolean finishLoad(@NonNull Runnable deadline) {
+        if (loadDeadline != deadline) {
+            return false;
+        }
+
+        handler.removeCallbacks(deadline);
+        loadDeadline = null;
+        isLoading = false;
+        isLoadSent = false;
+        return true;
+    }
+
+    /**
+     * Drops a load still waiting for the SDK initialization, it is then never sent.
+     */
+    private void cancelPendingLoad() {
+        if (loadDeadline == null || isLoadSent) {
+            return;
+        }
+
+        handler.removeCallbacks(loadDeadline);
+        loadDeadline = null;
+        isLoading = false;
+
+        // gives back a half-open probe without counting a failure
+        StartappCircuitBreaker.onFailed(breakerKey, false);
+    }
+}
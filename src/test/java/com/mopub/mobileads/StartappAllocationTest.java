@@ -0,0 +1,123 @@
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+
+import com.startapp.sdk.adsbase.Ad;
+import com.sun.management.ThreadMXBean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes the adapter allocates in a steady-state load/show cycle, which has to stay allocation-free
+ * once warmed up. The adapter's SDK callbacks are driven directly, the SDK's own objects are not part of the count.
+ */
+public class StartappAllocationTest {
+    private static final int WARM_UP_COUNT = 20000;
+    private static final int REPEAT_COUNT = 100000;
+
+    // ThreadMXBean itself may allocate a few bytes per measurement
+    private static final long MEASUREMENT_SLACK_BYTES = 1024;
+
+    private static final String[] ERROR_MESSAGES = {
+            null,
+            "",
+            "204",
+            "Empty Response",
+            "Error: Server returned HTTP response code: 500",
+            "Video download failed, the ad will not be displayed because of a timeout",
+    };
+
+    @After
+    public void tearDown() {
+        StartappSettings.setNoFillCircuitBreakerEnabled(false);
+        StartappLatency.reset();
+    }
+
+    @Test
+    public void errorClassification_doesNotAllocate() {
+        assertAllocationFree("StartappErrors.isNoFill", new Runnable() {
+            @Override
+            public void run() {
+                for (String message : ERROR_MESSAGES) {
+                    StartappErrors.isNoFill(message);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void latencyRecording_doesNotAllocate() {
+        final long startNanos = System.nanoTime();
+
+        assertAllocationFree("StartappLatency.record", new Runnable() {
+            @Override
+            public void run() {
+                StartappLatency.record(StartappLatency.Format.INTERSTITIAL, "allocation-test", StartappLatency.Metric.LOAD_SUCCESS, startNanos);
+                StartappLatency.record(StartappLatency.Format.INTERSTITIAL, "allocation-test", StartappLatency.Metric.SHOW, startNanos);
+                StartappLatency.record(StartappLatency.Format.BANNER, null, StartappLatency.Metric.IMPRESSION, startNanos);
+            }
+        });
+    }
+
+    @Test
+    public void closedCircuitBreaker_doesNotAllocate() {
+        StartappSettings.setNoFillCircuitBreakerEnabled(true);
+
+        final StartappCircuitBreaker.Key key = new StartappCircuitBreaker.Key(StartappLatency.Format.BANNER, "allocation-test", 0.5);
+
+        assertAllocationFree("StartappCircuitBreaker", new Runnable() {
+            @Override
+            public void run() {
+                StartappCircuitBreaker.allowRequest(key);
+                StartappCircuitBreaker.onLoaded(key);
+            }
+        });
+    }
+
+    @Test
+    public void interstitialCallbacks_doNotAllocate() {
+        final StartappAdapter.Dispatcher dispatcher = new StartappAdapter().dispatcher;
+
+        // the callbacks do not read the ad
+        final Ad ad = null;
+
+        assertAllocationFree("interstitial load/show callbacks", new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.onReceiveAd(ad);
+                dispatcher.adDisplayed(ad);
+                dispatcher.adClicked(ad);
+                dispatcher.adHidden(ad);
+            }
+        });
+    }
+
+    private static void assertAllocationFree(@NonNull String name, @NonNull Runnable cycle) {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof ThreadMXBean && ((ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+
+        final ThreadMXBean threads = (ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_COUNT; ++i) {
+            cycle.run();
+        }
+
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < REPEAT_COUNT; ++i) {
+            cycle.run();
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(name + " allocated " + allocated + " bytes in " + REPEAT_COUNT + " cycles",
+                allocated <= MEASUREMENT_SLACK_BYTES);
+    }
+}
@@ -0,0 +1,147 @@
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import androidx.annotation.NonNull;
+
+import com.mopub.common.AdapterConfiguration;
+import com.mopub.common.OnNetworkInitializationFinishedListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the adapter steps that run on the cold-start path and prints how long each of them took.
+ * The timings are reported, not asserted, wall-clock time on a shared build machine is too noisy for a budget;
+ * the steady-state costs are measured by the JMH benchmarks under {@code benchmarks/}.
+ * Runs on the JVM against the SDK classes with android.jar stubs returning default values.
+ * Every test starts from empty adapter caches and initializes a fake SDK instead of the real one.
+ */
+public class StartappColdStartTest {
+    private static final int REPEAT_COUNT = 10000;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final CountDownLatch sdkInitialized = new CountDownLatch(1);
+    private volatile String initializedAppId;
+
+    @Before
+    public void setUp() {
+        StartappConfig.resetForTesting();
+        StartappAdapter.Extras.resetForTesting();
+        StartappSdkInitializer.resetForTesting(new StartappSdkInitializer.Sdk() {
+            @Override
+            public void initialize(Context appContext, String appId) {
+                initializedAppId = appId;
+                sdkInitialized.countDown();
+            }
+        }, DIRECT);
+    }
+
+    @After
+    public void tearDown() {
+        StartappSdkInitializer.resetForTesting(null, null);
+    }
+
+    @Test
+    public void networkSdkVersion_isMemoized() {
+        final StartappConfig config = new StartappConfig();
+
+        long time = System.nanoTime();
+        final String first = config.getNetworkSdkVersion();
+        report("first getNetworkSdkVersion", System.nanoTime() - time);
+
+        time = System.nanoTime();
+        for (int i = 0; i < REPEAT_COUNT; ++i) {
+            assertSame(first, config.getNetworkSdkVersion());
+        }
+
+        report("memoized getNetworkSdkVersion", (System.nanoTime() - time) / REPEAT_COUNT);
+    }
+
+    @Test
+    public void adapterClasses_load() throws Exception {
+        final String[] classNames = {
+                "com.mopub.mobileads.StartappAdapter",
+                "com.mopub.mobileads.StartappAdapter$Extras",
+                "com.mopub.nativeads.StartappNative",
+                "com.startapp.sdk.ads.banner.Banner",
+                "com.startapp.sdk.ads.banner.banner3d.Banner3D",
+                "com.startapp.sdk.ads.banner.Mrec",
+                "com.startapp.sdk.ads.banner.BannerListener",
+                "com.startapp.sdk.adsbase.adlisteners.AdEventListener",
+                "com.startapp.sdk.adsbase.adlisteners.AdDisplayListener",
+        };
+
+        final ClassLoader loader = getClass().getClassLoader();
+
+        final long time = System.nanoTime();
+        for (String className : classNames) {
+            Class.forName(className, false, loader);
+        }
+
+        report("adapter class loading", System.nanoTime() - time);
+    }
+
+    @Test
+    public void extrasParse_isCachedAfterFirstLoad() {
+        final Map<String, String> serverExtras = new HashMap<>();
+        serverExtras.put("startappAppId", "cold-start-test");
+        serverExtras.put("adTag", "cold-start-test");
+        serverExtras.put("minCPM", "0.03");
+        serverExtras.put("muteVideo", "true");
+        serverExtras.put("interstitialMode", "VIDEO");
+
+        long time = System.nanoTime();
+        final StartappAdapter.Extras first = StartappAdapter.Extras.compile(null, serverExtras, false);
+        report("first Extras parse", System.nanoTime() - time);
+
+        time = System.nanoTime();
+        for (int i = 0; i < REPEAT_COUNT; ++i) {
+            assertSame(first, StartappAdapter.Extras.compile(null, serverExtras, false));
+        }
+
+        report("cached Extras lookup", (System.nanoTime() - time) / REPEAT_COUNT);
+    }
+
+    @Test
+    public void initializeNetwork_initializesSdk() throws Exception {
+        final Map<String, String> configuration = new HashMap<>();
+        configuration.put("startappAppId", "cold-start-test");
+
+        final MoPubErrorCode[] result = new MoPubErrorCode[1];
+
+        final long time = System.nanoTime();
+        new StartappConfig().initializeNetwork(new ContextWrapper(null), configuration, new OnNetworkInitializationFinishedListener() {
+            @Override
+            public void onNetworkInitializationFinished(@NonNull Class<? extends AdapterConfiguration> clazz, @NonNull MoPubErrorCode errorCode) {
+                result[0] = errorCode;
+            }
+        });
+
+        report("initializeNetwork", System.nanoTime() - time);
+        assertEquals(MoPubErrorCode.ADAPTER_INITIALIZATION_SUCCESS, result[0]);
+
+        assertTrue(sdkInitialized.await(1, TimeUnit.SECONDS));
+        assertEquals("cold-start-test", initializedAppId);
+    }
+
+    private static void report(@NonNull String step, long nanos) {
+        System.out.println("StartappColdStartTest: " + step + " took " + nanos + "ns");
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2020 StartApp Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.mopub.mobileads.StartappFlightRecorder.ERROR_CODE_MASK;
+import static com.mopub.mobileads.StartappFlightRecorder.EVENT_MASK;
+import static com.mopub.mobileads.StartappFlightRecorder.EVENT_SHIFT;
+import static com.mopub.mobileads.StartappFlightRecorder.FORMAT_MASK;
+import static com.mopub.mobileads.StartappFlightRecorder.FORMAT_SHIFT;
+import static com.mopub.mobileads.StartappFlightRecorder.MAGIC;
+import static com.mopub.mobileads.StartappFlightRecorder.TIME_SHIFT;
+import static com.mopub.mobileads.StartappFlightRecorder.VERSION;
+
+/**
+ * Turns {@link StartappFlightRecorder#dump()} output back into text. Kept with the unit tests so that it
+ * does not ship in the library, runs on a plain JVM after {@code ./gradlew compileDebugUnitTestJavaWithJavac}:
+ * {@code java -cp build/intermediates/javac/debug/classes:build/intermediates/javac/debugUnitTest/classes
+ * com.mopub.mobileads.StartappFlightRecorderDecoder dump.bin}, reads standard input when no file is given.
+ */
+public final class StartappFlightRecorderDecoder {
+    private StartappFlightRecorderDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final byte[] dump;
+
+        if (args.length > 0) {
+            final InputStream stream = new FileInputStream(args[0]);
+            try {
+                dump = readFully(stream);
+            } finally {
+                stream.close();
+            }
+        } else {
+            dump = readFully(System.in);
+        }
+
+        for (String line : decode(dump)) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @return one line per event: time relative to the first event, uptime, format, event and error code
+     */
+    @NonNull
+    public static List<String> decode(@NonNull byte[] dump) {
+        final ByteBuffer buffer = ByteBuffer.wrap(dump);
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a flight recorder dump");
+        }
+
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported dump version " + version);
+        }
+
+        final int count = Math.min(buffer.getInt(), buffer.remaining() / 8);
+        final StartappLatency.Format[] formats = StartappLatency.Format.values();
+        final StartappFlightRecorder.Event[] events = StartappFlightRecorder.Event.values();
+
+        final List<String> result = new ArrayList<>(count);
+        long firstMillis = -1;
+
+        for (int i = 0; i < count; ++i) {
+            final long packed = buffer.getLong();
+            if (packed == 0) {
+                continue;
+            }
+
+            final long millis = packed >>> TIME_SHIFT;
+            final int format = (int) (packed >>> FORMAT_SHIFT) & FORMAT_MASK;
+            final int event = (int) (packed >>> EVENT_SHIFT) & EVENT_MASK;
+            final int errorCode = (int) packed & ERROR_CODE_MASK;
+
+            if (firstMillis < 0) {
+                firstMillis = millis;
+            }
+
+            result.add(String.format(Locale.ENGLISH, "+%6dms uptime=%dms %-12s %-22s%s",
+                    millis - firstMillis,
+                    millis,
+                    format == 0 ? "-" : format <= formats.length ? formats[format - 1].name() : "#" + format,
+                    event < events.length ? events[event].name() : "#" + event,
+                    errorCode != 0 ? " error=" + errorCode : ""));
+        }
+
+        return result;
+    }
+
+    @NonNull
+    private static byte[] readFully(@NonNull InputStream stream) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        int count;
+        while ((count = stream.read(buffer)) != -1) {
+            result.write(buffer, 0, count);
+        }
+
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,121 @@
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import androidx.annotation.NonNull;
+
+import com.startapp.sdk.adsbase.StartAppAd;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StartappLoadSchedulerTest {
+    private final Context context = new ContextWrapper(null);
+    private final FakeProvider provider = new FakeProvider();
+
+    @Before
+    public void setUp() {
+        StartappSettings.setDeviceAwareLoadingEnabled(true);
+        StartappSettings.setLowBatteryBannerInterval(2, TimeUnit.MINUTES);
+        StartappLoadScheduler.setProvider(provider);
+        StartappLoadScheduler.reset();
+    }
+
+    @After
+    public void tearDown() {
+        StartappSettings.setDeviceAwareLoadingEnabled(false);
+        StartappLoadScheduler.setProvider(null);
+        StartappLoadScheduler.reset();
+    }
+
+    @Test
+    public void isOffline_onlyWithoutNetwork() {
+        provider.connectivity = StartappLoadScheduler.Connectivity.NONE;
+        assertTrue(StartappLoadScheduler.isOffline(context));
+
+        provider.connectivity = StartappLoadScheduler.Connectivity.METERED;
+        assertFalse(StartappLoadScheduler.isOffline(context));
+
+        provider.connectivity = StartappLoadScheduler.Connectivity.UNKNOWN;
+        assertFalse(StartappLoadScheduler.isOffline(context));
+    }
+
+    @Test
+    public void allowsPrefetch_videoWaitsForUnmeteredNetwork() {
+        provider.connectivity = StartappLoadScheduler.Connectivity.METERED;
+        assertFalse(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.VIDEO));
+        assertFalse(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.REWARDED_VIDEO));
+        assertFalse(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.AUTOMATIC));
+        assertFalse(StartappLoadScheduler.allowsPrefetch(context, null));
+        assertTrue(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.OVERLAY));
+        assertTrue(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.FULLPAGE));
+
+        provider.connectivity = StartappLoadScheduler.Connectivity.UNMETERED;
+        assertTrue(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.REWARDED_VIDEO));
+
+        provider.connectivity = StartappLoadScheduler.Connectivity.NONE;
+        assertFalse(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.OVERLAY));
+    }
+
+    @Test
+    public void allowsBannerLoad_spacesRefreshesOnLowBattery() {
+        final Object placement = new Object();
+
+        provider.batteryPercent = 10;
+        assertTrue(StartappLoadScheduler.allowsBannerLoad(context, placement));
+        assertFalse(StartappLoadScheduler.allowsBannerLoad(context, placement));
+        assertTrue(StartappLoadScheduler.allowsBannerLoad(context, new Object()));
+
+        provider.isCharging = true;
+        assertTrue(StartappLoadScheduler.allowsBannerLoad(context, placement));
+
+        provider.isCharging = false;
+        provider.batteryPercent = 80;
+        assertTrue(StartappLoadScheduler.allowsBannerLoad(context, placement));
+    }
+
+    @Test
+    public void disabled_letsEveryLoadThrough() {
+        StartappSettings.setDeviceAwareLoadingEnabled(false);
+
+        provider.connectivity = StartappLoadScheduler.Connectivity.NONE;
+        provider.batteryPercent = 1;
+
+        final Object placement = new Object();
+
+        assertFalse(StartappLoadScheduler.isOffline(context));
+        assertTrue(StartappLoadScheduler.allowsPrefetch(context, StartAppAd.AdMode.VIDEO));
+        assertTrue(StartappLoadScheduler.allowsBannerLoad(context, placement));
+        assertTrue(StartappLoadScheduler.allowsBannerLoad(context, placement));
+    }
+
+    private static final class FakeProvider implements StartappLoadScheduler.Provider {
+        @NonNull
+        StartappLoadScheduler.Connectivity connectivity = StartappLoadScheduler.Connectivity.UNMETERED;
+
+        int batteryPercent = 100;
+        boolean isCharging;
+
+        @NonNull
+        @Override
+        public StartappLoadScheduler.Connectivity getConnectivity(@NonNull Context context) {
+            return connectivity;
+        }
+
+        @Override
+        public int getBatteryPercent(@NonNull Context context) {
+            return batteryPercent;
+        }
+
+        @Override
+        public boolean isCharging(@NonNull Context context) {
+            return isCharging;
+        }
+    }
+}
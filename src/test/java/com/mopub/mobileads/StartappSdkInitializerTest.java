@@ -0,0 +1,234 @@
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers the SDK initialization state machine from many threads against a fake SDK.
+ */
+public class StartappSdkInitializerTest {
+    private static final int THREAD_COUNT = 32;
+    private static final int ROUNDS = 50;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final Context context = new ContextWrapper(null) {
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+    };
+
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() {
+        threads = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        threads.shutdownNow();
+        StartappSdkInitializer.resetForTesting(null, null);
+    }
+
+    @Test
+    public void concurrentCallers_startOneAttemptAndAllRunOnceReady() throws Exception {
+        for (int round = 0; round < ROUNDS; ++round) {
+            final CountDownLatch release = new CountDownLatch(1);
+            final FakeSdk sdk = new FakeSdk(release, 0);
+            StartappSdkInitializer.resetForTesting(sdk, DIRECT);
+
+            final AtomicInteger started = new AtomicInteger();
+            final AtomicInteger ran = new AtomicInteger();
+            final AtomicInteger ranBeforeReady = new AtomicInteger();
+
+            final List<Future<?>> results = runConcurrently(new Runnable() {
+                @Override
+                public void run() {
+                    if (StartappSdkInitializer.start(context, "app")) {
+                        started.incrementAndGet();
+                    }
+
+                    StartappSdkInitializer.whenReady(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (StartappSdkInitializer.getState() != StartappSdkInitializer.State.READY) {
+                                ranBeforeReady.incrementAndGet();
+                            }
+
+                            ran.incrementAndGet();
+                        }
+                    });
+                }
+            });
+
+            await(results);
+
+            assertEquals(1, started.get());
+            assertEquals(StartappSdkInitializer.State.INITIALIZING, StartappSdkInitializer.getState());
+            assertEquals(0, ran.get());
+
+            release.countDown();
+            assertEquals(Boolean.TRUE, StartappSdkInitializer.getReadiness().get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            assertEquals(1, sdk.calls.get());
+            assertEquals(THREAD_COUNT, ran.get());
+            assertEquals(0, ranBeforeReady.get());
+            assertEquals(StartappSdkInitializer.State.READY, StartappSdkInitializer.getState());
+            assertFalse(StartappSdkInitializer.start(context, "app"));
+        }
+    }
+
+    @Test
+    public void waitersRacingCompletion_runExactlyOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; ++round) {
+            final FakeSdk sdk = new FakeSdk(null, 0);
+            StartappSdkInitializer.resetForTesting(sdk, DIRECT);
+
+            final AtomicInteger ran = new AtomicInteger();
+
+            assertTrue(StartappSdkInitializer.start(context, "app"));
+
+            final List<Future<?>> results = runConcurrently(new Runnable() {
+                @Override
+                public void run() {
+                    StartappSdkInitializer.whenReady(new Runnable() {
+                        @Override
+                        public void run() {
+                            ran.incrementAndGet();
+                        }
+                    });
+                }
+            });
+
+            await(results);
+            StartappSdkInitializer.getReadiness().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            assertEquals(THREAD_COUNT, ran.get());
+        }
+    }
+
+    @Test
+    public void failedInitialization_releasesWaitersAndIsRetried() throws Exception {
+        final FakeSdk sdk = new FakeSdk(null, 1);
+        StartappSdkInitializer.resetForTesting(sdk, DIRECT);
+
+        final AtomicInteger ran = new AtomicInteger();
+        final Runnable waiter = new Runnable() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+            }
+        };
+
+        assertTrue(StartappSdkInitializer.start(context, "app"));
+        StartappSdkInitializer.whenReady(waiter);
+
+        assertEquals(Boolean.FALSE, StartappSdkInitializer.getReadiness().get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(StartappSdkInitializer.State.FAILED, StartappSdkInitializer.getState());
+        assertEquals(1, ran.get());
+
+        final List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; ++i) {
+            results.add(threads.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return StartappSdkInitializer.start(context, "app");
+                }
+            }));
+        }
+
+        int started = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                ++started;
+            }
+        }
+
+        assertEquals(1, started);
+        assertEquals(Boolean.TRUE, StartappSdkInitializer.getReadiness().get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(StartappSdkInitializer.State.READY, StartappSdkInitializer.getState());
+        assertEquals(2, sdk.calls.get());
+    }
+
+    @NonNull
+    private List<Future<?>> runConcurrently(@NonNull final Runnable task) {
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Future<?>> result = new ArrayList<>(THREAD_COUNT);
+
+        for (int i = 0; i < THREAD_COUNT; ++i) {
+            result.add(threads.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    go.await();
+                    task.run();
+                    return null;
+                }
+            }));
+        }
+
+        go.countDown();
+        return result;
+    }
+
+    private static void await(@NonNull List<Future<?>> results) throws Exception {
+        for (Future<?> result : results) {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class FakeSdk implements StartappSdkInitializer.Sdk {
+        final AtomicInteger calls = new AtomicInteger();
+
+        private final CountDownLatch release;
+        private final int failures;
+
+        FakeSdk(CountDownLatch release, int failures) {
+            this.release = release;
+            this.failures = failures;
+        }
+
+        @Override
+        public void initialize(@NonNull Context appContext, @NonNull String appId) {
+            final int call = calls.incrementAndGet();
+
+            if (release != null) {
+                try {
+                    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (call <= failures) {
+                throw new IllegalStateException("init failure " + call);
+            }
+        }
+    }
+}